@@ -11,17 +11,12 @@ public class BinomialIdentityUtils {
         for (int i = 1; i <= r; i++) {
             num *= (n - r + i);
             den *= i;
-            long g = gcd(num, den);
+            long g = GCDUtils.gcd(num, den);
             if (g > 1) { num /= g; den /= g; }
         }
         return num / den;
     }
 
-    private static long gcd(long a, long b) {
-        while (b != 0) { long t = a % b; a = b; b = t; }
-        return Math.abs(a);
-    }
-
     // Vandermonde: sum_{k} C(m,k) C(n, r-k) = C(m+n, r)
     public static long vandermonde(int m, int n, int r) {
         long sum = 0;
@@ -48,11 +43,28 @@ public class BinomialIdentityUtils {
         return b;
     }
 
+    /**
+     * Binomial transform mod a prime p, len(a) <= p < 2^31, in O(n log n):
+     * b_n / n! = sum_k (a_k / k!) (1 / (n-k)!), one Poly product of exponential generating functions.
+     */
+    public static long[] binomialTransform(long[] a, long p) {
+        if (a.length == 0) return new long[0];
+        if (p < a.length || p >= ModArrays.MAX_MODULUS) throw new IllegalArgumentException("need a.length <= p < 2^31, p prime");
+        Modulus m = Modulus.of(p);
+        long[] fact = ModArrays.factorials(a.length - 1, p), inv = ModArrays.inverseFactorials(fact, p);
+        long[] egf = new long[a.length];
+        for (int k = 0; k < a.length; k++) egf[k] = m.mul(m.reduce(a[k]), inv[k]);
+        long[] b = Arrays.copyOf(Poly.multiply(egf, inv, p), a.length);
+        for (int i = 0; i < b.length; i++) b[i] = m.mul(b[i], fact[i]);
+        return b;
+    }
+
     public static void main(String[] args) {
         System.out.println("C(10,3) = " + nCr(10,3));
         System.out.println("Vandermonde(5,7,6) = " + vandermonde(5,7,6) + " should equal C(12,6) = " + nCr(12,6));
         System.out.println("Hockey 5,2 = " + hockey(5,2) + " should equal C(6,3)=" + nCr(6,3));
         long[] a = {1,2,3,4};
         System.out.println("Binomial transform of [1,2,3,4] = " + Arrays.toString(binomialTransform(a)));
+        System.out.println("... mod 998244353 via Poly = " + Arrays.toString(binomialTransform(a, Poly.MOD)));
     }
 }
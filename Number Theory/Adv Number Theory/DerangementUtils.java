@@ -16,11 +16,16 @@ public class DerangementUtils {
 
     // derangement modulo mod
     public static long derangementMod(int n, long mod) {
-        if (n == 0) return 1 % mod;
+        return derangementMod(n, Modulus.of(mod));
+    }
+
+    // derangement modulo any mod < 2^63, without division
+    public static long derangementMod(int n, Modulus mod) {
+        if (n == 0) return mod.reduce(1);
         if (n == 1) return 0;
-        long a = 1 % mod, b = 0;
+        long a = mod.reduce(1), b = 0;
         for (int i = 2; i <= n; i++) {
-            long c = ((i - 1) * ((a + b) % mod)) % mod;
+            long c = mod.mul(mod.reduce(i - 1), mod.add(a, b));
             a = b; b = c;
         }
         return b;
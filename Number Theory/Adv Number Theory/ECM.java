@@ -0,0 +1,238 @@
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Lenstra's elliptic-curve method for BigInteger inputs, on Montgomery curves
+ * B y^2 = x^3 + A x^2 + x in projective (X : Z) coordinates with Suyama's parametrization
+ * (group order divisible by 12, so smooth orders are more likely).
+ *
+ * Stage 1 multiplies a random point by every prime power <= B1 with the Montgomery ladder.
+ * Stage 2 covers one extra prime B1 < q <= B2 by baby-step giant-step: q = m D +- j with
+ * D = 2310, and (X_mD Z_j - X_j Z_mD) for all such q is multiplied into a single gcd.
+ * Curves are independent and run in parallel on the common pool; the first factor found
+ * stops the others.
+ *
+ * factorize strips small primes by trial division, hands cofactors below 2^63 to PollardRho
+ * and uses ECM above that, raising B1 level by level (tuned for factors of 15..40 digits).
+ * Once ECM has ruled out small factors, cofactors up to about 90 digits go to SIQS, which
+ * does not care how balanced the factors are.
+ *
+ * Usage:
+ *   List<BigInteger> f = ECM.factorize(new BigInteger("..."));
+ *   BigInteger d = ECM.findFactor(n, 50_000, 300); // one level only, null if none found
+ */
+public class ECM {
+
+    // {B1, curves}: the GMP-ECM table for factors of about 15, 20, 25, 30, 35 and 40 digits
+    private static final long[][] LEVELS = {
+            {2_000, 25}, {11_000, 90}, {50_000, 300}, {250_000, 700}, {1_000_000, 1_800}, {3_000_000, 5_100}};
+    private static final long B2_FACTOR = 100;
+    // n up to SIQS_MAX_BITS (about 90 digits) goes to SIQS once ECM has ruled out factors
+    // below 25 digits, or below 15 digits when n has at most SIQS_SMALL_BITS (about 60 digits)
+    private static final int SIQS_SMALL_BITS = 200;
+    private static final int SIQS_MAX_BITS = 300;
+
+    private static final int D = 2310; // 2 * 3 * 5 * 7 * 11
+    private static final int TRIAL_LIMIT = 10_000;
+    private static final BigInteger LONG_LIMIT = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private ECM() {}
+
+    /** Prime factors of n >= 1, ascending, with multiplicity */
+    public static List<BigInteger> factorize(BigInteger n) {
+        if (n.signum() <= 0) throw new IllegalArgumentException("n must be >= 1");
+        List<BigInteger> out = new ArrayList<>();
+        for (int p = 2; p <= TRIAL_LIMIT && n.compareTo(BigInteger.ONE) > 0; p += p == 2 ? 1 : 2) {
+            BigInteger bp = BigInteger.valueOf(p);
+            BigInteger[] qr = n.divideAndRemainder(bp);
+            while (qr[1].signum() == 0) {
+                out.add(bp);
+                n = qr[0];
+                qr = n.divideAndRemainder(bp);
+            }
+        }
+        factor(n, out);
+        Collections.sort(out);
+        return out;
+    }
+
+    private static void factor(BigInteger n, List<BigInteger> out) {
+        if (n.equals(BigInteger.ONE)) return;
+        if (n.compareTo(LONG_LIMIT) <= 0) {
+            for (long p : PollardRho.factorize(n.longValue())) out.add(BigInteger.valueOf(p));
+            return;
+        }
+        if (isProbablePrime(n)) {
+            out.add(n);
+            return;
+        }
+        BigInteger d = null;
+        int siqsLevel = n.bitLength() <= SIQS_SMALL_BITS ? 1 : 3;
+        for (int i = 0; i < LEVELS.length && d == null; i++) {
+            if (i == siqsLevel && n.bitLength() <= SIQS_MAX_BITS) d = SIQS.findFactor(n);
+            if (d == null) d = findFactor(n, LEVELS[i][0], (int) LEVELS[i][1]);
+        }
+        if (d == null) throw new ArithmeticException("no factor of " + n + " found up to B1 = 3e6");
+        factor(d, out);
+        factor(n.divide(d), out);
+    }
+
+    /** Deterministic MillerRabin below 2^63, BigInteger's Miller-Rabin + Lucas test above */
+    public static boolean isProbablePrime(BigInteger n) {
+        if (n.compareTo(LONG_LIMIT) <= 0) return MillerRabin.isPrime(n.longValue());
+        return n.isProbablePrime(64);
+    }
+
+    /**
+     * Runs up to `curves` curves with bound B1 (and B2 = 100 B1) on odd composite n, in parallel.
+     * Returns a nontrivial factor, or null if every curve failed.
+     */
+    public static BigInteger findFactor(BigInteger n, long B1, int curves) {
+        long[] primes = SegmentedSieve.primesInRange(2, B1);
+        long B2 = B1 * B2_FACTOR;
+        AtomicBoolean stop = new AtomicBoolean();
+        Optional<BigInteger> found = IntStream.range(0, curves).parallel()
+                .mapToObj(c -> {
+                    if (stop.get()) return null;
+                    BigInteger d = new Curve(n, ThreadLocalRandom.current().nextLong(6, Integer.MAX_VALUE), stop)
+                            .run(primes, B1, B2);
+                    if (d != null) stop.set(true);
+                    return d;
+                })
+                .filter(Objects::nonNull)
+                .findAny();
+        return found.orElse(null);
+    }
+
+    /** x-only arithmetic on one Suyama curve mod n */
+    private static final class Curve {
+        private final BigInteger n;
+        private final AtomicBoolean stop; // set once any curve has found a factor
+        private BigInteger a24;           // (A + 2) / 4
+        private BigInteger x, z;          // the current point
+        private BigInteger factor;        // found while setting up the curve
+
+        Curve(BigInteger n, long sigma, AtomicBoolean stop) {
+            this.n = n;
+            this.stop = stop;
+            BigInteger s = BigInteger.valueOf(sigma);
+            BigInteger u = s.multiply(s).subtract(BigInteger.valueOf(5)).mod(n);
+            BigInteger v = s.shiftLeft(2).mod(n);
+            BigInteger u3 = u.pow(3).mod(n);
+            x = u3;
+            z = v.pow(3).mod(n);
+            // a24 = (v - u)^3 (3u + v) / (16 u^3 v)
+            BigInteger num = v.subtract(u).pow(3).multiply(u.multiply(BigInteger.valueOf(3)).add(v)).mod(n);
+            BigInteger den = u3.multiply(v).shiftLeft(4).mod(n);
+            BigInteger g = den.gcd(n);
+            if (g.equals(BigInteger.ONE)) a24 = num.multiply(den.modInverse(n)).mod(n);
+            else if (!g.equals(n)) factor = g; // a lucky factor from the curve setup
+        }
+
+        /** Stage 1 then stage 2; a nontrivial factor or null */
+        BigInteger run(long[] primes, long B1, long B2) {
+            if (factor != null) return factor;
+            if (a24 == null) return null; // degenerate sigma
+            for (long p : primes) {
+                long q = p;
+                while (q <= B1 / p) q *= p;
+                BigInteger[] r = multiply(x, z, q);
+                x = r[0];
+                z = r[1];
+                if (stop.get()) return null;
+            }
+            BigInteger g = z.gcd(n);
+            if (g.equals(n)) return null;
+            if (!g.equals(BigInteger.ONE)) return g;
+            return stage2(B1, B2);
+        }
+
+        private BigInteger stage2(long B1, long B2) {
+            // baby steps: [j]P for odd j < D / 2 (only those coprime to D are ever read)
+            BigInteger[] bx = new BigInteger[D / 2], bz = new BigInteger[D / 2];
+            BigInteger[] p2 = dbl(x, z);
+            bx[1] = x;
+            bz[1] = z;
+            BigInteger[] p3 = add(p2[0], p2[1], x, z, x, z);
+            bx[3] = p3[0];
+            bz[3] = p3[1];
+            for (int j = 5; j < D / 2; j += 2) {
+                BigInteger[] r = add(bx[j - 2], bz[j - 2], p2[0], p2[1], bx[j - 4], bz[j - 4]);
+                bx[j] = r[0];
+                bz[j] = r[1];
+            }
+            BigInteger[] step = multiply(x, z, D);
+
+            // giant steps: R = [m D]P walks m upward from the first q past B1
+            long m = Math.max(1, (B1 + 1 + D / 2) / D);
+            BigInteger[] r = multiply(x, z, m * D);
+            BigInteger[] prev = m == 1 ? null : multiply(x, z, (m - 1) * D);
+            BigInteger[] acc = {BigInteger.ONE};
+            long[] cur = {m};
+            BigInteger[][] state = {r, prev};
+            SegmentedSieve.forEachPrime(B1 + 1, B2, q -> {
+                if (stop.get()) return;
+                long mq = (q + D / 2) / D; // q = mq D + j with |j| < D / 2
+                while (cur[0] < mq) {
+                    BigInteger[] next = state[1] == null
+                            ? dbl(state[0][0], state[0][1])
+                            : add(state[0][0], state[0][1], step[0], step[1], state[1][0], state[1][1]);
+                    state[1] = state[0];
+                    state[0] = next;
+                    cur[0]++;
+                }
+                int j = (int) Math.abs(q - mq * D);
+                BigInteger t = state[0][0].multiply(bz[j]).subtract(bx[j].multiply(state[0][1]));
+                acc[0] = acc[0].multiply(t).mod(n);
+            });
+            BigInteger g = acc[0].gcd(n);
+            return g.equals(BigInteger.ONE) || g.equals(n) ? null : g;
+        }
+
+        /** [k](x : z) by the Montgomery ladder, k >= 1 */
+        private BigInteger[] multiply(BigInteger px, BigInteger pz, long k) {
+            BigInteger[] r0 = {px, pz};
+            BigInteger[] r1 = dbl(px, pz);
+            for (int bit = 62 - Long.numberOfLeadingZeros(k); bit >= 0; bit--) {
+                if (((k >>> bit) & 1) != 0) {
+                    r0 = add(r1[0], r1[1], r0[0], r0[1], px, pz);
+                    r1 = dbl(r1[0], r1[1]);
+                } else {
+                    r1 = add(r1[0], r1[1], r0[0], r0[1], px, pz);
+                    r0 = dbl(r0[0], r0[1]);
+                }
+            }
+            return r0;
+        }
+
+        private BigInteger[] dbl(BigInteger px, BigInteger pz) {
+            BigInteger s = px.add(pz), d = px.subtract(pz);
+            BigInteger t1 = s.multiply(s).mod(n), t2 = d.multiply(d).mod(n);
+            BigInteger t3 = t1.subtract(t2);
+            return new BigInteger[]{t1.multiply(t2).mod(n), t3.multiply(t2.add(a24.multiply(t3))).mod(n)};
+        }
+
+        /** P + Q given the x-coordinate of P - Q */
+        private BigInteger[] add(BigInteger px, BigInteger pz, BigInteger qx, BigInteger qz,
+                                 BigInteger dx, BigInteger dz) {
+            BigInteger u = px.subtract(pz).multiply(qx.add(qz)).mod(n);
+            BigInteger v = px.add(pz).multiply(qx.subtract(qz)).mod(n);
+            BigInteger s = u.add(v), d = u.subtract(v);
+            return new BigInteger[]{dz.multiply(s.multiply(s)).mod(n), dx.multiply(d.multiply(d)).mod(n)};
+        }
+    }
+
+    public static void main(String[] args) {
+        BigInteger f7 = BigInteger.ONE.shiftLeft(128).add(BigInteger.ONE); // 59649589127497217 * 5704689200685129054721
+        BigInteger p = BigInteger.TEN.pow(19).nextProbablePrime(), q = BigInteger.TEN.pow(29).nextProbablePrime();
+        BigInteger[] tests = {BigInteger.ONE.shiftLeft(64).add(BigInteger.ONE), f7, p.multiply(q), q};
+        for (BigInteger n : tests) {
+            long start = System.currentTimeMillis();
+            List<BigInteger> f = factorize(n);
+            System.out.println(n + " = " + f + " (" + (System.currentTimeMillis() - start) + " ms)");
+        }
+    }
+}
@@ -20,7 +20,7 @@ public class InclusionExclusionUtils {
             boolean ok = true;
             for (int i = 0; i < m; i++) {
                 if ((mask & (1 << i)) != 0) {
-                    long g = gcd(lcm, divisors[i]);
+                    long g = GCDUtils.gcd(lcm, divisors[i]);
                     // check overflow of lcm * (divisors[i]/g) using double
                     long next = lcm / g;
                     if (next > Long.MAX_VALUE / divisors[i]) { ok = false; break; }
@@ -35,14 +35,6 @@ public class InclusionExclusionUtils {
         return ans;
     }
 
-    private static long gcd(long a, long b) {
-        a = Math.abs(a); b = Math.abs(b);
-        while (b != 0) {
-            long t = a % b; a = b; b = t;
-        }
-        return a;
-    }
-
     /** Example: count numbers <= N divisible by a or b or c */
     public static void main(String[] args) {
         long N = 100;
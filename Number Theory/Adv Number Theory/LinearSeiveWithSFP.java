@@ -7,13 +7,15 @@ import java.util.*;
 public class LinearSieveWithSPF {
     public static int[] spf(int n) {
         int[] spf = new int[n + 1];
-        List<Integer> primes = new ArrayList<>();
+        int[] primes = new int[maxPrimeCount(n)];
+        int count = 0;
         for (int i = 2; i <= n; i++) {
             if (spf[i] == 0) {
                 spf[i] = i;
-                primes.add(i);
+                primes[count++] = i;
             }
-            for (int p : primes) {
+            for (int k = 0; k < count; k++) {
+                int p = primes[k];
                 long v = 1L * p * i;
                 if (v > n) break;
                 spf[(int)v] = p;
@@ -23,6 +25,12 @@ public class LinearSieveWithSPF {
         return spf;
     }
 
+    /** Upper bound on pi(n): pi(n) < 1.25506 n / ln n for n > 1 (Rosser-Schoenfeld); shared by the linear sieves */
+    static int maxPrimeCount(int n) {
+        if (n < 17) return 7;
+        return (int) (1.25506 * n / Math.log(n)) + 1;
+    }
+
     public static List<Integer> primesUpTo(int n) {
         int[] spf = spf(n);
         List<Integer> primes = new ArrayList<>();
@@ -40,10 +48,21 @@ public class LinearSieveWithSPF {
         return map;
     }
 
+    /**
+     * Allocation-free variant: writes the factorization of x into out (cleared first)
+     * and returns the number of distinct primes.
+     */
+    public static int factorFromSPF(int x, int[] spf, PrimeUtils.FactorBuffer out) {
+        return PrimeUtils.factorize(x, spf, out);
+    }
+
     public static void main(String[] args) {
         int N = 100;
         System.out.println("Primes up to " + N + ": " + primesUpTo(N));
         int[] s = spf(N);
         System.out.println("SPF factorization of 84: " + factorFromSPF(84, s));
+        PrimeUtils.FactorBuffer buf = new PrimeUtils.FactorBuffer();
+        factorFromSPF(90, s, buf);
+        System.out.println("SPF factorization of 90 (buffer): " + buf);
     }
 }
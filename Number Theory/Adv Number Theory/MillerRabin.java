@@ -1,66 +1,218 @@
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
- * Deterministic Miller-Rabin for 64-bit integers based on tested bases.
- * Use MillerRabin.isPrime(n) to test primality for n < 2^64.
+ * Deterministic primality for 64-bit integers, one at a time or in bulk.
+ *
+ * Every test runs the same three stages and allocates nothing:
+ *  1. n < 2^16 is a table lookup; otherwise one n % 30030 against a wheel bitmap rejects
+ *     multiples of 2..13, and multiply-by-inverse checks reject multiples of 17..251
+ *     without any division,
+ *  2. Miller-Rabin in Montgomery form with {2, 7, 61} below 4759123141, and with the
+ *     7-base set {2, 325, 9375, 28178, 450775, 9780504, 1795265022} above it (Sinclair),
+ *  3. or, through isPrimeBPSW, Baillie-PSW (base-2 strong test + strong Lucas test),
+ *     which has no counterexample below 2^64.
+ *
+ * Usage:
+ *   MillerRabin.isPrime(1_000_000_007L);
+ *   boolean[] out = new boolean[in.length];
+ *   MillerRabin.isPrimeAll(in, out); // spread over all cores
  */
 public class MillerRabin {
 
-    private static long modMul(long a, long b, long mod) {
-        // Use long with builtin to avoid overflow: use unsigned multiply via BigInteger-like trick.
-        // But simplest safe: use Java's built-in BigInteger when needed - however for speed, do this:
-        long res = 0;
-        a %= mod;
-        b %= mod;
-        while (b > 0) {
-            if ((b & 1) == 1) res = (res + a) % mod;
-            a = (a << 1) % mod;
-            b >>= 1;
+    // 2 * 3 * 5 * 7 * 11 * 13: bit r set iff gcd(r, WHEEL) = 1
+    private static final int WHEEL = 30030;
+    private static final long[] WHEEL_COPRIME = new long[(WHEEL + 63) >>> 6];
+
+    // n < SMALL_LIMIT is answered from a sieve bitmap; it also covers every trial prime
+    private static final int SMALL_LIMIT = 1 << 16;
+    private static final long[] SMALL_PRIMES = new long[SMALL_LIMIT >>> 6];
+
+    // odd primes 17..251: n is a multiple of p iff n * p^-1 mod 2^64 <= (2^64 - 1) / p
+    private static final long[] TRIAL_INV;
+    private static final long[] TRIAL_LIMIT;
+
+    private static final long[] BASES_32 = {2, 7, 61};
+    private static final long BASES_32_BOUND = 4_759_123_141L;
+    private static final long[] BASES_64 = {2, 325, 9375, 28178, 450775, 9780504, 1795265022};
+
+    // work is handed out in chunks of this many values (a multiple of 64 for the BitSet words)
+    private static final int CHUNK = 1 << 12;
+
+    static {
+        boolean[] composite = new boolean[SMALL_LIMIT];
+        composite[0] = composite[1] = true;
+        for (int i = 2; i * i < SMALL_LIMIT; i++)
+            if (!composite[i]) for (int j = i * i; j < SMALL_LIMIT; j += i) composite[j] = true;
+        for (int i = 0; i < SMALL_LIMIT; i++) if (!composite[i]) SMALL_PRIMES[i >>> 6] |= 1L << i;
+
+        for (int r = 0; r < WHEEL; r++)
+            if (r % 2 != 0 && r % 3 != 0 && r % 5 != 0 && r % 7 != 0 && r % 11 != 0 && r % 13 != 0)
+                WHEEL_COPRIME[r >>> 6] |= 1L << r;
+
+        int count = 0;
+        for (int p = 17; p < 256; p++) if (!composite[p]) count++;
+        TRIAL_INV = new long[count];
+        TRIAL_LIMIT = new long[count];
+        for (int p = 17, k = 0; p < 256; p++) {
+            if (composite[p]) continue;
+            long inv = p; // Newton: each step doubles the correct low bits
+            for (int i = 0; i < 5; i++) inv *= 2 - p * inv;
+            TRIAL_INV[k] = inv;
+            TRIAL_LIMIT[k++] = Long.divideUnsigned(-1L, p);
         }
-        return res;
     }
 
-    private static long modPow(long a, long e, long mod) {
-        long res = 1;
-        a %= mod;
-        while (e > 0) {
-            if ((e & 1) == 1) res = modMul(res, a, mod);
-            a = modMul(a, a, mod);
-            e >>= 1;
+    private MillerRabin() {}
+
+    /** Deterministic for every long; false for n < 2 */
+    public static boolean isPrime(long n) {
+        int sieved = trialDivision(n);
+        if (sieved != 0) return sieved > 0;
+        Montgomery m = new Montgomery(n);
+        long[] bases = n < BASES_32_BOUND ? BASES_32 : BASES_64;
+        for (long a : bases) {
+            if (!strongProbablePrime(m, a)) return false;
         }
-        return res;
+        return true;
     }
 
-    // Deterministic bases for testing 64-bit numbers
-    private static final long[] bases = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
+    /** Baillie-PSW: base-2 strong probable prime and strong Lucas probable prime (Selfridge D) */
+    public static boolean isPrimeBPSW(long n) {
+        int sieved = trialDivision(n);
+        if (sieved != 0) return sieved > 0;
+        Montgomery m = new Montgomery(n);
+        return strongProbablePrime(m, 2) && strongLucas(m);
+    }
 
-    public static boolean isPrime(long n) {
-        if (n < 2) return false;
-        for (long p : new long[]{2,3,5,7,11,13,17,19,23,29,31,37}) {
-            if (n == p) return true;
-            if (n % p == 0) return n == p;
+    /** out[i] = isPrime(in[i]), computed in parallel */
+    public static void isPrimeAll(long[] in, boolean[] out) {
+        if (out.length < in.length) throw new IllegalArgumentException("out is shorter than in");
+        IntStream.range(0, (in.length + CHUNK - 1) / CHUNK).parallel().forEach(c -> {
+            int end = Math.min(in.length, (c + 1) * CHUNK);
+            for (int i = c * CHUNK; i < end; i++) out[i] = isPrime(in[i]);
+        });
+    }
+
+    /** Sets out to exactly the indices i with in[i] prime, computed in parallel */
+    public static void isPrimeAll(long[] in, BitSet out) {
+        long[] words = new long[(in.length + 63) >>> 6];
+        // every chunk owns whole words, so workers never share one
+        IntStream.range(0, (in.length + CHUNK - 1) / CHUNK).parallel().forEach(c -> {
+            int end = Math.min(in.length, (c + 1) * CHUNK);
+            for (int i = c * CHUNK; i < end; i++) if (isPrime(in[i])) words[i >>> 6] |= 1L << i;
+        });
+        out.clear();
+        out.or(BitSet.valueOf(words));
+    }
+
+    /** 1 = prime, -1 = composite (or < 2), 0 = undecided: odd, >= 2^16, no factor below 256 */
+    private static int trialDivision(long n) {
+        if (n < SMALL_LIMIT) return n >= 0 && (SMALL_PRIMES[(int) n >>> 6] & (1L << n)) != 0 ? 1 : -1;
+        int r = (int) (n % WHEEL);
+        if ((WHEEL_COPRIME[r >>> 6] & (1L << r)) == 0) return -1;
+        for (int k = 0; k < TRIAL_INV.length; k++) {
+            if (Long.compareUnsigned(n * TRIAL_INV[k], TRIAL_LIMIT[k]) <= 0) return -1;
         }
+        return 0;
+    }
+
+    /** Strong probable-prime test to base a for odd n = m.n */
+    private static boolean strongProbablePrime(Montgomery m, long a) {
+        long n = m.n;
         long d = n - 1;
-        int s = 0;
-        while ((d & 1) == 0) {
-            d >>= 1; s++;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>>= s;
+        long x = m.toMont(a);
+        if (x == 0) return true; // a = 0 mod n says nothing
+        x = m.pow(x, d);
+        if (x == m.one || x == m.minusOne) return true;
+        for (int r = 1; r < s; r++) {
+            x = m.mul(x, x);
+            if (x == m.minusOne) return true;
         }
-        for (long a : bases) {
-            if (a % n == 0) continue;
-            long x = modPow(a, d, n);
-            if (x == 1 || x == n - 1) continue;
-            boolean composite = true;
-            for (int r = 1; r < s; r++) {
-                x = modMul(x, x, n);
-                if (x == n - 1) { composite = false; break; }
+        return false;
+    }
+
+    /**
+     * Strong Lucas test with P = 1, Q = (1 - D) / 4 and D the first of 5, -7, 9, -11, ...
+     * with Jacobi(D / n) = -1. Checks U_d = 0 or V_(d 2^r) = 0 for n + 1 = d 2^s.
+     */
+    private static boolean strongLucas(Montgomery m) {
+        long n = m.n;
+        long root = SegmentedSieve.isqrt(n);
+        if (root * root == n) return false; // no D exists for squares
+        long D = 5;
+        while (true) {
+            int j = jacobi(Math.floorMod(D, n), n);
+            if (j == -1) break;
+            if (j == 0 && Math.abs(D) != n) return false; // |D| shares a factor with n
+            D = D > 0 ? -D - 2 : -D + 2;
+        }
+        long dm = m.toMont(Math.floorMod(D, n));
+        long qm = m.toMont(Math.floorMod((1 - D) / 4, n));
+
+        long np1 = n + 1; // unsigned when n = 2^63 - 1
+        int s = Long.numberOfTrailingZeros(np1);
+        long d = np1 >>> s;
+
+        // binary ladder from the top bit of d: (U_k, V_k, Q^k), starting at k = 1
+        long u = m.one, v = m.one, qk = qm;
+        for (int bit = 62 - Long.numberOfLeadingZeros(d); bit >= 0; bit--) {
+            u = m.mul(u, v);                               // U_2k = U_k V_k
+            v = m.sub(m.mul(v, v), m.add(qk, qk));         // V_2k = V_k^2 - 2 Q^k
+            qk = m.mul(qk, qk);
+            if (((d >>> bit) & 1) != 0) {
+                long u1 = half(m, m.add(u, v));            // U_2k+1 = (U_2k + V_2k) / 2
+                v = half(m, m.add(m.mul(dm, u), v));       // V_2k+1 = (D U_2k + V_2k) / 2
+                u = u1;
+                qk = m.mul(qk, qm);
             }
-            if (composite) return false;
         }
-        return true;
+        if (u == 0 || v == 0) return true;
+        for (int r = 1; r < s; r++) {
+            v = m.sub(m.mul(v, v), m.add(qk, qk));
+            qk = m.mul(qk, qk);
+            if (v == 0) return true;
+        }
+        return false;
+    }
+
+    /** x / 2 mod n; linear, so it works the same on Montgomery residues */
+    private static long half(Montgomery m, long x) {
+        return (x & 1) == 0 ? x >>> 1 : (x + m.n) >>> 1; // x + n < 2^64 as unsigned
+    }
+
+    /** Jacobi symbol (a / n) for odd n > 0 and 0 <= a */
+    private static int jacobi(long a, long n) {
+        a %= n;
+        int t = 1;
+        while (a != 0) {
+            int z = Long.numberOfTrailingZeros(a);
+            a >>>= z;
+            long r = n & 7;
+            if ((z & 1) == 1 && (r == 3 || r == 5)) t = -t;
+            if ((a & 3) == 3 && (n & 3) == 3) t = -t;
+            long tmp = a;
+            a = n % a;
+            n = tmp;
+        }
+        return n == 1 ? t : 0;
     }
 
     public static void main(String[] args) {
         long[] tests = {2,3,5,7,11,13,17,19,23,29,31,37, 61, 1_000_000_007L, 1_000_000_009L, 4_294_967_297L};
-        for (long t : tests) System.out.println(t + " prime? " + isPrime(t));
+        for (long t : tests) System.out.println(t + " prime? " + isPrime(t) + " / BPSW " + isPrimeBPSW(t));
+
+        int count = 10_000_000;
+        long[] in = new long[count];
+        for (int i = 0; i < count; i++) in[i] = 1_000_000_000_000_000_000L + i;
+        boolean[] out = new boolean[count];
+        long start = System.currentTimeMillis();
+        isPrimeAll(in, out);
+        int primes = 0;
+        for (boolean b : out) if (b) primes++;
+        System.out.println("primes in [1e18, 1e18 + 1e7): " + primes + " in "
+                + (System.currentTimeMillis() - start) + " ms");
     }
 }
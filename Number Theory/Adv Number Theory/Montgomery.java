@@ -0,0 +1,152 @@
+/**
+ * 64-bit modular multiplication without BigInteger: the full 128-bit product from
+ * Math.multiplyHigh, reduced either by Montgomery REDC (odd moduli) or by a two-digit
+ * long division (any modulus).
+ *
+ * A Montgomery instance keeps residues in the form x * 2^64 mod n, so every product costs
+ * three multiplications and no division. Convert once on the way in and once on the way out:
+ *   Montgomery m = new Montgomery(n);             // n odd, 1 < n < 2^63
+ *   long x = m.toMont(a), y = m.mul(x, x);        // a^2 in Montgomery form
+ *   m.fromMont(y) == a * a mod n
+ * The static mulMod / powMod take plain residues and work for every modulus in [1, 2^63).
+ */
+public final class Montgomery {
+
+    private static final long MASK32 = 0xFFFFFFFFL;
+
+    public final long n;
+    /** 1 and n - 1 in Montgomery form */
+    public final long one, minusOne;
+    private final long inv; // n^-1 mod 2^64
+    private final long r2;  // 2^128 mod n
+
+    public Montgomery(long n) {
+        if (n <= 1 || (n & 1) == 0) throw new IllegalArgumentException("modulus must be odd and > 1");
+        this.n = n;
+        long x = n; // Newton: each step doubles the correct low bits (n * n = 1 mod 8)
+        for (int i = 0; i < 5; i++) x *= 2 - n * x;
+        inv = x;
+        one = remainder(1, 0, n);
+        minusOne = n - one;
+        r2 = remainder(one, 0, n);
+    }
+
+    /** (hi * 2^64 + lo) * 2^-64 mod n, for hi < n */
+    private long redc(long hi, long lo) {
+        long q = lo * inv; // q * n has the same low word as the product, so it cancels exactly
+        long t = hi - unsignedMultiplyHigh(q, n);
+        return t < 0 ? t + n : t;
+    }
+
+    /** a * 2^64 mod n, for any a >= 0 */
+    public long toMont(long a) {
+        if (a >= n) a %= n;
+        return redc(unsignedMultiplyHigh(a, r2), a * r2);
+    }
+
+    public long fromMont(long x) {
+        return redc(0, x);
+    }
+
+    public long mul(long x, long y) {
+        return redc(unsignedMultiplyHigh(x, y), x * y);
+    }
+
+    public long add(long x, long y) {
+        long s = x - n + y; // x, y < n < 2^63, so x - n + y never overflows
+        return s < 0 ? s + n : s;
+    }
+
+    public long sub(long x, long y) {
+        long d = x - y;
+        return d < 0 ? d + n : d;
+    }
+
+    /** x^e in Montgomery form, e >= 0 */
+    public long pow(long x, long e) {
+        long r = one;
+        while (e > 0) {
+            if ((e & 1) == 1) r = mul(r, x);
+            x = mul(x, x);
+            e >>>= 1;
+        }
+        return r;
+    }
+
+    /** a^e mod n on plain residues */
+    public long powMod(long a, long e) {
+        return fromMont(pow(toMont(a), e));
+    }
+
+    // ---------- static kernel ----------
+
+    /** High 64 bits of the unsigned 128-bit product a * b */
+    public static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    /**
+     * (hi * 2^64 + lo) mod m for 0 < m < 2^63 and hi < m (unsigned), so the quotient fits
+     * in 64 bits. Two-digit long division in base 2^32 (Knuth D, Hacker's Delight divlu).
+     */
+    public static long remainder(long hi, long lo, long m) {
+        int s = Long.numberOfLeadingZeros(m);
+        long v = m << s;
+        long vn1 = v >>> 32, vn0 = v & MASK32;
+        long un32 = (hi << s) | (lo >>> 1 >>> (63 - s)); // shift in two steps: s may be 0
+        long un10 = lo << s;
+        long un1 = un10 >>> 32, un0 = un10 & MASK32;
+
+        long q1 = Long.divideUnsigned(un32, vn1);
+        long rhat = Long.remainderUnsigned(un32, vn1);
+        while (q1 > MASK32 || Long.compareUnsigned(q1 * vn0, (rhat << 32) | un1) > 0) {
+            q1--;
+            rhat += vn1;
+            if (rhat > MASK32) break;
+        }
+        long un21 = ((un32 << 32) | un1) - q1 * v;
+
+        long q0 = Long.divideUnsigned(un21, vn1);
+        rhat = Long.remainderUnsigned(un21, vn1);
+        while (q0 > MASK32 || Long.compareUnsigned(q0 * vn0, (rhat << 32) | un0) > 0) {
+            q0--;
+            rhat += vn1;
+            if (rhat > MASK32) break;
+        }
+        return (((un21 << 32) | un0) - q0 * v) >>> s;
+    }
+
+    /** a * b mod m for 0 < m < 2^63 and a, b in [0, m) */
+    public static long mulMod(long a, long b, long m) {
+        long hi = unsignedMultiplyHigh(a, b), lo = a * b;
+        if (hi == 0 && lo >= 0) return lo % m;
+        return remainder(hi, lo, m);
+    }
+
+    /** a^e mod m for 0 < m < 2^63, a >= 0, e >= 0; odd moduli go through Montgomery form */
+    public static long powMod(long a, long e, long m) {
+        if (m == 1) return 0;
+        if ((m & 1) == 1) return new Montgomery(m).powMod(a, e);
+        a %= m;
+        long r = 1;
+        while (e > 0) {
+            if ((e & 1) == 1) r = mulMod(r, a, m);
+            a = mulMod(a, a, m);
+            e >>>= 1;
+        }
+        return r;
+    }
+
+    public static void main(String[] args) {
+        long n = 9_223_372_036_854_775_783L; // largest prime below 2^63
+        Montgomery m = new Montgomery(n);
+        System.out.println("2^(n-1) mod n = " + m.powMod(2, n - 1) + " (expected 1)");
+        System.out.println("mulMod(n-1, n-1, n) = " + mulMod(n - 1, n - 1, n) + " (expected 1)");
+
+        long x = m.toMont(3);
+        long start = System.nanoTime();
+        for (int i = 0; i < 100_000_000; i++) x = m.mul(x, x);
+        System.out.println("1e8 Montgomery squarings: " + (System.nanoTime() - start) / 1_000_000
+                + " ms (" + m.fromMont(x) + ")");
+    }
+}
@@ -1,37 +1,58 @@
-import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Pollard's Rho integer factorization (randomized).
  * Returns prime factors (not necessarily sorted). Uses MillerRabin for primality test.
+ * The rho walk runs on Montgomery residues and a binary gcd, with no BigInteger and no
+ * shared state, so factorize can be called from many threads at once.
  */
 public class PollardRho {
 
-    private static final Random rand = new Random();
-
-    private static long modMul(long a, long b, long mod) {
-        return BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).mod(BigInteger.valueOf(mod)).longValue();
-    }
-
-    private static long modPow(long a, long e, long mod) {
-        return BigInteger.valueOf(a).modPow(BigInteger.valueOf(e), BigInteger.valueOf(mod)).longValue();
-    }
+    // differences multiplied together between two gcds
+    private static final int BATCH = 128;
 
+    /**
+     * Returns a nontrivial factor of the odd composite n (or 2 for even n).
+     * Brent's cycle search: the tortoise x sits at step 2^k - 1 while the hare y walks the
+     * next 2^k steps, and |x - y| for BATCH steps is multiplied into one product before a
+     * gcd. If a batch jumps straight to gcd = n, it is replayed one step at a time from ys.
+     * Randomness comes from ThreadLocalRandom, so concurrent callers share no state.
+     */
     private static long rhoSingle(long n) {
         if (n % 2 == 0) return 2;
-        long c = Math.abs(rand.nextLong()) % (n - 1) + 1;
-        long x = Math.abs(rand.nextLong()) % n;
-        long y = x;
-        long d = 1;
-        while (d == 1) {
-            x = (modMul(x, x, n) + c) % n;
-            y = (modMul(y, y, n) + c) % n;
-            y = (modMul(y, y, n) + c) % n;
-            long diff = x > y ? x - y : y - x;
-            d = BigInteger.valueOf(diff).gcd(BigInteger.valueOf(n)).longValue();
-            if (d == n) return rhoSingle(n);
+        // iterate x -> x^2 + c directly on Montgomery residues: every value carries the
+        // same factor 2^64, which is coprime to n, so the gcds are unchanged
+        Montgomery m = new Montgomery(n);
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        while (true) {
+            long c = rnd.nextLong(1, n);
+            long y = rnd.nextLong(n);
+            long x = y, ys = y;
+            long q = m.one;
+            long g = 1;
+            for (long r = 1; g == 1; r <<= 1) {
+                x = y;
+                for (long i = 0; i < r; i++) y = m.add(m.mul(y, y), c);
+                for (long k = 0; k < r && g == 1; k += BATCH) {
+                    ys = y;
+                    long steps = Math.min(BATCH, r - k);
+                    for (long i = 0; i < steps; i++) {
+                        y = m.add(m.mul(y, y), c);
+                        q = m.mul(q, x > y ? x - y : y - x);
+                    }
+                    g = GCDUtils.gcd(q, n);
+                }
+            }
+            if (g == n) {
+                do {
+                    ys = m.add(m.mul(ys, ys), c);
+                    g = GCDUtils.gcd(x > ys ? x - ys : ys - x, n);
+                } while (g == 1);
+            }
+            if (g != n) return g;
+            // the cycle closed mod n itself: retry with a new c
         }
-        return d;
     }
 
     public static void factor(long n, List<Long> out) {
@@ -56,5 +77,13 @@ public class PollardRho {
         long n = 600851475143L; // example
         System.out.println("Factors of " + n + " = " + factorize(n));
         System.out.println("Factors of 1e12+39 = " + factorize(1_000_000_039L));
+
+        // semiprimes near 2^62 with two 31-bit factors: the worst case for rho
+        long p = 2_147_483_647L, q = 2_147_483_629L;
+        int reps = 10_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < reps; i++) factorize(p * q);
+        System.out.println("Factors of " + p * q + " = " + factorize(p * q) + ", "
+                + (System.nanoTime() - start) / reps / 1000 + " us each");
     }
 }
@@ -0,0 +1,338 @@
+import java.util.*;
+
+/**
+ * Prime counting function pi(x) via Lagarias-Miller-Odlyzko, and nthPrime(k) on top of it.
+ *
+ * pi(x) = phi(x, a) + a - 1 - P2(x, a) with y ~ alpha * x^(1/3), a = pi(y):
+ *  - ordinary leaves of phi use a small wheel table phi(., c),
+ *  - easy special leaves (prime cofactor, small quotient) are read off a pi table in runs,
+ *  - the remaining special leaves come from sieving [1, x / y] segment by segment as a
+ *    bitset with per-block survivor counters,
+ *  - P2 counts primes up to x / y with SegmentedSieve.
+ * Time: about O(x^(2/3) log x), Memory: O(x^(1/3))
+ */
+public class PrimeCounting {
+
+    // below this, a plain segmented sieve count is faster than setting up LMO
+    private static final long SIEVE_THRESHOLD = 10_000_000L;
+    // number of primes handled by the phi(x, c) wheel table: 2*3*5*7*11*13 = 30030
+    private static final int C = 6;
+    // survivors of the special-leaf sieve are counted per block of 2^BLOCK_SHIFT integers
+    private static final int BLOCK_SHIFT = 9;
+    // y = alpha * cbrt(x) with alpha = (ln x)^2 * ALPHA_SCALE, tuned on 1e12..1e14
+    private static final double ALPHA_SCALE = 1.0 / 60;
+
+    private PrimeCounting() {}
+
+    /** Number of primes <= x */
+    public static long pi(long x) {
+        if (x < 2) return 0;
+        if (x < SIEVE_THRESHOLD) return SegmentedSieve.countPrimes(0, x);
+
+        long cbrt = icbrt(x);
+        // a larger y shortens the sieve over [1, x / y] at the cost of more leaves
+        double alpha = Math.max(1.0, ALPHA_SCALE * Math.pow(Math.log(x), 2));
+        long y = Math.min((long) (alpha * cbrt), SegmentedSieve.isqrt(x));
+        y = Math.max(y, cbrt);
+        long z = x / y;
+
+        int[] spf = LinearSieveWithSPF.spf((int) y);
+        int[] primes = primesFromSpf(spf, (int) y); // primes[1] = 2
+        int piY = primes.length - 1;
+        int[] mu = mobiusFromSpf(spf, (int) y);
+        spf[1] = Integer.MAX_VALUE; // lpf(1) counts as infinity in the leaf conditions
+
+        long s1 = ordinaryLeaves(x, (int) y, primes, spf, mu);
+        long s2 = specialLeaves(x, (int) y, z, primes, spf, mu, piTable(primes, (int) y));
+        long p2 = p2(x, y, piY);
+        return s1 + s2 + piY - 1 - p2;
+    }
+
+    /**
+     * Returns the k-th prime (k >= 1, nthPrime(1) = 2).
+     * Counts up to an li^-1(k) estimate with pi(), then sieves the short gap to the answer.
+     */
+    public static long nthPrime(long k) {
+        if (k < 1) throw new IllegalArgumentException("k must be >= 1");
+        if (k < 100_000) return PrimeStream.primes(2).skip(k - 1).findFirst().getAsLong();
+
+        long guess = (long) inverseLi(k);
+        long count = pi(guess);
+        if (count < k) {
+            return PrimeStream.primes(guess + 1).skip(k - count - 1).findFirst().getAsLong();
+        }
+        // the answer is the (count - k + 1)-th prime counting down from guess
+        long need = count - k + 1;
+        long hi = guess;
+        long window = Math.max(1L << 20, (long) Math.sqrt((double) guess));
+        while (true) {
+            long lo = Math.max(2, hi - window + 1);
+            long[] ps = SegmentedSieve.primesInRange(lo, hi);
+            if (ps.length >= need) return ps[(int) (ps.length - need)];
+            need -= ps.length;
+            hi = lo - 1;
+        }
+    }
+
+    // ---------- LMO pieces ----------
+
+    /** S1 = sum over n <= y with lpf(n) > p_c of mu(n) * phi(x / n, c) */
+    private static long ordinaryLeaves(long x, int y, int[] primes, int[] spf, int[] mu) {
+        int c = Math.min(C, primes.length - 1);
+        PhiTable phi = new PhiTable(primes, c);
+        long pc = primes[c];
+        long sum = 0;
+        for (int n = 1; n <= y; n++) {
+            if (mu[n] == 0) continue;
+            if (n > 1 && spf[n] <= pc) continue;
+            sum += mu[n] * phi.phi(x / n);
+        }
+        return sum;
+    }
+
+    /**
+     * S2 = - sum over special leaves n = p_b * m (m <= y < n, lpf(m) > p_b, b > c)
+     * of mu(m) * phi(x / n, b - 1).
+     *
+     * For p_b > sqrt(y) the cofactor m must be a prime q. Those leaves with
+     * x / n <= min(y, p_b^2 - 1) are "easy": phi(x / n, b - 1) = pi(x / n) - b + 2 comes
+     * from the pi table, and runs of q giving the same pi value are summed at once.
+     * Every other leaf is "hard" and is read off a sieve of [1, z] walked in segments.
+     */
+    private static long specialLeaves(long x, int y, long z, int[] primes, int[] spf, int[] mu, int[] piTable) {
+        int piY = primes.length - 1;
+        int c = Math.min(C, piY);
+        int piSqrtY = piTable[(int) SegmentedSieve.isqrt(y)];
+
+        long s2 = easyLeaves(x, y, primes, piTable, piSqrtY);
+
+        int segSize = Math.max(1 << 16, Integer.highestOneBit((int) SegmentedSieve.isqrt(z)) << 1);
+        long[] sieve = new long[segSize >>> 6];        // bit set = survivor
+        int[] counters = new int[segSize >>> BLOCK_SHIFT]; // survivors per block
+        long[] next = new long[piY + 1];  // next multiple of primes[b] to cross off
+        long[] phi = new long[piY + 1];   // survivors below the current segment, per b
+        for (int b = 1; b <= piY; b++) next[b] = primes[b];
+
+        for (long low = 1; low <= z; low += segSize) {
+            long high = Math.min(low + segSize, z + 1);
+            int len = (int) (high - low);
+            Arrays.fill(sieve, 0L);
+            Arrays.fill(sieve, 0, len >>> 6, -1L);
+            if ((len & 63) != 0) sieve[len >>> 6] = (1L << len) - 1;
+
+            for (int b = 1; b <= c; b++) {
+                long k = next[b];
+                for (; k < high; k += primes[b]) sieve[(int) ((k - low) >>> 6)] &= ~(1L << (k - low));
+                next[b] = k;
+            }
+            int total = 0;
+            for (int blk = 0; blk < counters.length; blk++) {
+                int cnt = 0;
+                for (int w = blk << (BLOCK_SHIFT - 6); w < (blk + 1) << (BLOCK_SHIFT - 6); w++) cnt += Long.bitCount(sieve[w]);
+                counters[blk] = cnt;
+                total += cnt;
+            }
+
+            for (int b = c + 1; b < piY; b++) {
+                long prime = primes[b];
+                long minM = Math.max(x / (prime * high), y / prime);
+                long maxM = Math.min(x / (prime * low), y);
+                if (prime >= maxM) break; // no leaves for this or any larger prime from here on
+
+                // leaves of one b come in increasing x / n, so survivors are counted by a forward sweep
+                int blk = 0;
+                long before = 0; // survivors in blocks [0, blk)
+                if (b <= piSqrtY) {
+                    for (long m = maxM; m > minM; m--) {
+                        if (mu[(int) m] != 0 && prime < spf[(int) m]) {
+                            int idx = (int) (x / (prime * m) - low);
+                            while (((blk + 1) << BLOCK_SHIFT) <= idx) before += counters[blk++];
+                            s2 -= mu[(int) m] * (phi[b] + before + countBits(sieve, blk << BLOCK_SHIFT, idx));
+                        }
+                    }
+                } else {
+                    long hardMax = Math.min(maxM, x / ((Math.min(y, prime * prime - 1) + 1) * prime));
+                    int stop = piTable[(int) Math.min(y, Math.max(minM, prime))];
+                    for (int i = piTable[(int) Math.max(hardMax, 0)]; i > stop; i--) {
+                        int idx = (int) (x / (prime * primes[i]) - low);
+                        while (((blk + 1) << BLOCK_SHIFT) <= idx) before += counters[blk++];
+                        s2 += phi[b] + before + countBits(sieve, blk << BLOCK_SHIFT, idx);
+                    }
+                }
+                phi[b] += total;
+
+                long k = next[b];
+                for (; k < high; k += prime) {
+                    int i = (int) (k - low);
+                    long bit = 1L << i;
+                    if ((sieve[i >>> 6] & bit) != 0) {
+                        sieve[i >>> 6] &= ~bit;
+                        counters[i >>> BLOCK_SHIFT]--;
+                        total--;
+                    }
+                }
+                next[b] = k;
+            }
+        }
+        return s2;
+    }
+
+    /** Sum of the easy leaves: cofactor q prime and x / (p_b q) <= min(y, p_b^2 - 1) */
+    private static long easyLeaves(long x, int y, int[] primes, int[] piTable, int piSqrtY) {
+        int piY = primes.length - 1;
+        long sum = 0;
+        for (int b = piSqrtY + 1; b < piY; b++) {
+            long p = primes[b];
+            long t = Math.min(y, p * p - 1);
+            int stop = piTable[(int) Math.min(y, Math.max(p, x / ((t + 1) * p)))];
+            // walk q downward (x / (p q) upward), jumping over runs that share pi(x / (p q))
+            for (int i = piY; i > stop; ) {
+                long xn = x / (p * primes[i]);
+                long value, bound; // value holds for every q with x / (p q) < bound
+                if (xn < p) {
+                    value = 1;
+                    bound = p;
+                } else {
+                    int k = piTable[(int) xn];
+                    value = k - b + 2;
+                    bound = k < piY ? primes[k + 1] : y + 1L;
+                }
+                int j = Math.max(stop, piTable[(int) Math.min(y, x / (p * bound))]);
+                sum += value * (i - j);
+                i = j;
+            }
+        }
+        return sum;
+    }
+
+    /** Set bits of sieve in [from, to], inclusive; from is word aligned */
+    private static int countBits(long[] sieve, int from, int to) {
+        int cnt = 0;
+        int w = from >>> 6;
+        for (; w < to >>> 6; w++) cnt += Long.bitCount(sieve[w]);
+        return cnt + Long.bitCount(sieve[w] & (-1L >>> (63 - (to & 63))));
+    }
+
+    /** P2 = sum over primes y < p <= sqrt(x) of (pi(x / p) - pi(p) + 1) */
+    private static long p2(long x, long y, int piY) {
+        long root = SegmentedSieve.isqrt(x);
+        long[] ps = SegmentedSieve.primesInRange(y + 1, root);
+        if (ps.length == 0) return 0;
+
+        // x / p grows as p shrinks: walk primes upward from root once and read off pi(x / p)
+        long[] counts = new long[ps.length];
+        long[] cnt = {SegmentedSieve.countPrimes(0, root)};
+        int[] j = {ps.length - 1};
+        SegmentedSieve.forEachPrime(root + 1, x / ps[0], q -> {
+            while (j[0] >= 0 && x / ps[j[0]] < q) counts[j[0]--] = cnt[0];
+            cnt[0]++;
+        });
+        while (j[0] >= 0) counts[j[0]--] = cnt[0];
+
+        long sum = 0;
+        for (int i = 0; i < ps.length; i++) {
+            long b = piY + 1 + i; // pi(ps[i])
+            sum += counts[i] - b + 1;
+        }
+        return sum;
+    }
+
+    /** phi(v, c) for the first c primes in O(1) using one period of the wheel */
+    private static final class PhiTable {
+        private final int period;
+        private final int totient;
+        private final int[] counts; // counts[r] = #{1 <= n <= r : gcd(n, period) = 1}
+
+        PhiTable(int[] primes, int c) {
+            int p = 1;
+            for (int b = 1; b <= c; b++) p *= primes[b];
+            period = p;
+            counts = new int[period];
+            boolean[] coprime = new boolean[period];
+            Arrays.fill(coprime, true);
+            for (int b = 1; b <= c; b++) for (int k = 0; k < period; k += primes[b]) coprime[k] = false;
+            int acc = 0;
+            for (int r = 0; r < period; r++) {
+                if (coprime[r]) acc++;
+                counts[r] = acc;
+            }
+            totient = acc;
+        }
+
+        long phi(long v) {
+            return (v / period) * totient + counts[(int) (v % period)];
+        }
+    }
+
+    // ---------- helpers ----------
+
+    private static int[] primesFromSpf(int[] spf, int n) {
+        int count = 0;
+        for (int i = 2; i <= n; i++) if (spf[i] == i) count++;
+        int[] primes = new int[count + 1];
+        int k = 1;
+        for (int i = 2; i <= n; i++) if (spf[i] == i) primes[k++] = i;
+        return primes;
+    }
+
+    /** piTable[v] = number of primes <= v, for v <= n */
+    private static int[] piTable(int[] primes, int n) {
+        int[] pi = new int[n + 1];
+        for (int k = 1, v = 0; v <= n; v++) {
+            while (k < primes.length && primes[k] <= v) k++;
+            pi[v] = k - 1;
+        }
+        return pi;
+    }
+
+    private static int[] mobiusFromSpf(int[] spf, int n) {
+        int[] mu = new int[n + 1];
+        mu[1] = 1;
+        for (int i = 2; i <= n; i++) {
+            int p = spf[i];
+            int rest = i / p;
+            mu[i] = rest % p == 0 ? 0 : -mu[rest];
+        }
+        return mu;
+    }
+
+    private static long icbrt(long x) {
+        long r = (long) Math.cbrt((double) x);
+        while (r * r * r > x) r--;
+        while ((r + 1) * (r + 1) * (r + 1) <= x) r++;
+        return r;
+    }
+
+    /** Solves li(x) = k by Newton's method (li via Ramanujan's series) */
+    private static double inverseLi(long k) {
+        double x = k * Math.log(k);
+        for (int i = 0; i < 20; i++) {
+            double step = (li(x) - k) * Math.log(x);
+            x -= step;
+            if (Math.abs(step) < 1) break;
+        }
+        return x;
+    }
+
+    private static double li(double x) {
+        double lnx = Math.log(x);
+        double sum = 0, term = 1, inner = 0;
+        for (int n = 1; n < 200; n++) {
+            term *= lnx / n;
+            if ((n - 1) % 2 == 0) inner += 1.0 / (2 * ((n - 1) / 2) + 1);
+            double add = (n % 2 == 1 ? 1 : -1) * term / Math.pow(2, n - 1) * inner;
+            sum += add;
+            if (Math.abs(add) < 1e-12 * Math.abs(sum)) break;
+        }
+        return 0.5772156649015329 + Math.log(lnx) + Math.sqrt(x) * sum;
+    }
+
+    public static void main(String[] args) {
+        long[] xs = {100, 1_000_000, 1_000_000_000L, 1_000_000_000_000L};
+        for (long x : xs) System.out.println("pi(" + x + ") = " + pi(x));
+        long t = System.currentTimeMillis();
+        System.out.println("pi(1e14) = " + pi(100_000_000_000_000L) + " (expected 3204941750802) in "
+                + (System.currentTimeMillis() - t) + " ms");
+        System.out.println("nthPrime(1e9) = " + nthPrime(1_000_000_000L) + " (expected 22801763489)");
+    }
+}
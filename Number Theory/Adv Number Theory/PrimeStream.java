@@ -0,0 +1,140 @@
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy prime source over [from, to] for any 0 <= from <= to <= 2^63 - 1.
+ *
+ * Primes are produced segment by segment by SegmentedSieve's worker, so memory stays at
+ * one L1-sized segment plus the base primes up to sqrt of the current position, and the
+ * consumer can stop early (limit, findFirst, takeWhile) without sieving the rest.
+ * The spliterator splits the range in halves, so parallel streams sieve disjoint parts.
+ *
+ * Usage:
+ *   PrimeStream.primes(2, 1_000_000_000L).filter(p -> p % 4 == 1).count();
+ *   PrimitiveIterator.OfLong it = PrimeStream.iterator(1_000_000_000_000L, Long.MAX_VALUE);
+ */
+public class PrimeStream {
+
+    // do not split below this many integers: each half pays for activating its base primes
+    private static final long MIN_SPLIT = 64 * SegmentedSieve.SEGMENT_SPAN;
+
+    private PrimeStream() {}
+
+    /** Sequential stream of primes in [from, to], ascending; call parallel() to split it */
+    public static LongStream primes(long from, long to) {
+        return StreamSupport.longStream(new PrimeSpliterator(from, to), false);
+    }
+
+    /** Primes from 'from' upward, until the consumer stops or 2^63 - 1 is reached */
+    public static LongStream primes(long from) {
+        return primes(from, Long.MAX_VALUE);
+    }
+
+    /** Iterator over the primes in [from, to], ascending */
+    public static PrimitiveIterator.OfLong iterator(long from, long to) {
+        return Spliterators.iterator(new PrimeSpliterator(from, to));
+    }
+
+    static final class PrimeSpliterator implements Spliterator.OfLong {
+        private long lo;
+        private final long hi;
+        private boolean emitTwo;
+        private SegmentedSieve.Worker worker; // created on first advance
+        private int word, lastWord;
+        private long bits;
+
+        PrimeSpliterator(long from, long to) {
+            this.lo = Math.max(from, 0);
+            this.hi = to;
+            this.emitTwo = lo <= 2 && 2 <= hi;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (emitTwo) {
+                emitTwo = false;
+                action.accept(2);
+                return true;
+            }
+            if (worker == null) {
+                if (lo > hi) return false;
+                worker = new SegmentedSieve.Worker(lo, hi);
+                word = 0;
+                lastWord = -1;
+            }
+            while (bits == 0) {
+                if (word >= lastWord) {
+                    if (!worker.next()) return false;
+                    if (worker.fromBit >= worker.toBit) continue;
+                    word = worker.fromBit >>> 6;
+                    lastWord = ((worker.toBit - 1) >>> 6) + 1;
+                } else {
+                    word++;
+                    if (word >= lastWord) continue;
+                }
+                bits = ~worker.words[word] & worker.mask(word);
+            }
+            int bit = (word << 6) + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            action.accept(worker.segLow + 2L * bit + 1);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            while (bits != 0 || emitTwo || worker == null) {
+                if (!tryAdvance(action)) return;
+            }
+            // drain the current segment, then sieve the rest without per-element bookkeeping
+            while (++word < lastWord) {
+                long b = ~worker.words[word] & worker.mask(word);
+                while (b != 0) {
+                    action.accept(worker.segLow + 2L * ((word << 6) + Long.numberOfTrailingZeros(b)) + 1);
+                    b &= b - 1;
+                }
+            }
+            while (worker.next()) worker.forEach(action);
+            word = lastWord = 0;
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            if (worker != null || hi - lo < 2 * MIN_SPLIT) return null;
+            long mid = lo + (hi - lo) / 2;
+            PrimeSpliterator prefix = new PrimeSpliterator(lo, mid);
+            prefix.emitTwo = emitTwo;
+            emitTwo = false;
+            lo = mid + 1;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            if (lo > hi) return emitTwo ? 1 : 0;
+            // pi(hi) - pi(lo) is roughly (hi - lo) / ln(hi)
+            return (long) ((hi - lo) / Math.max(1.0, Math.log((double) hi))) + 1;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super Long> getComparator() {
+            return null; // natural order
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.println("First 10 primes after 1e18: "
+                + Arrays.toString(primes(1_000_000_000_000_000_000L).limit(10).toArray()));
+        System.out.println("pi(1e8) via stream = " + primes(0, 100_000_000L).count() + " (expected 5761455)");
+        System.out.println("pi(1e8) via parallel stream = " + primes(0, 100_000_000L).parallel().count());
+
+        PrimitiveIterator.OfLong it = iterator(1_000_000_000_000_000L, 1_000_000_000_000_100L);
+        while (it.hasNext()) System.out.println("Prime just above 1e15: " + it.nextLong());
+    }
+}
@@ -0,0 +1,231 @@
+import java.math.BigInteger;
+
+/**
+ * Sums of f(p) over primes p <= n for completely multiplicative f (Lucy_Hedgehog DP).
+ *
+ * Only the O(sqrt n) values v = floor(n / i) are ever needed. S(v) starts as the sum of
+ * f(i) over 2 <= i <= v, and for each prime p <= sqrt(n) the composites with least prime
+ * factor p are removed:
+ *   S(v) -= f(p) * (S(v / p) - S(p - 1))   for every v >= p^2
+ * which is exact because f is completely multiplicative.
+ * Time: O(n^(3/4) / log n), Memory: two long[sqrt(n) + 1]
+ *
+ * Arithmetic is done modulo mod, with mod = 0 meaning plain long arithmetic (mod 2^64).
+ * That is exact for prime counts; sum(n) combines it with a second modulus for an exact
+ * BigInteger sum.
+ *
+ * Usage:
+ *   PrimeSums.count(1_000_000_000_000L);                 // pi(1e12) = 37607912018
+ *   PrimeSums.sum(1_000_000_000_000L);                   // exact sum of primes <= 1e12
+ *   PrimeSums.powerSum(1_000_000_000L, 2, 1_000_000_007); // sum of p^2 mod 1e9+7
+ *   PrimeSums.table(n, PrimeSums.CHI4, 0).get(n);        // #(p = 1 mod 4) - #(p = 3 mod 4)
+ */
+public class PrimeSums {
+
+    /** Largest modulus whose residues multiply without overflow: (mod - 1)^2 <= 2^63 - 1 */
+    public static final long MAX_MOD = 3_037_000_500L;
+
+    /** Largest n: the tables have sqrt(n) + 1 entries, which must fit an array length */
+    public static final long MAX_N = (long) Integer.MAX_VALUE * Integer.MAX_VALUE - 1;
+
+    // further moduli for the exact sum, both prime: 2^31 - 1 and 2^31 - 19
+    private static final long M31 = Integer.MAX_VALUE;
+    private static final long M31B = Integer.MAX_VALUE - 18;
+
+    // up to here the sum of primes (< n^2 / 2 < 2^93) fits 2^64 (2^31 - 1); beyond, 2^31 - 19 joins
+    // in for a bound of 2^126 > (2^62)^2 / 2
+    private static final long SUM_TWO_MODULI_MAX = 1L << 47;
+
+    private PrimeSums() {}
+
+    /**
+     * A completely multiplicative weight f, evaluated modulo mod (mod = 0: wrap mod 2^64).
+     * Both methods return residues in [0, mod) when mod > 0.
+     */
+    public interface Weight {
+        /** f(p) for a prime p <= sqrt(n) */
+        long prime(long p, long mod);
+
+        /** f(2) + f(3) + ... + f(v), for v >= 1 (empty sum at v = 1) */
+        long prefix(long v, long mod);
+    }
+
+    /** f = 1: S(v) counts primes */
+    public static final Weight COUNT = power(0);
+
+    /** Non-principal character mod 4: +1 on 1 mod 4, -1 on 3 mod 4, 0 on even numbers */
+    public static final Weight CHI4 = new Weight() {
+        public long prime(long p, long mod) {
+            return p == 2 ? 0 : p % 4 == 1 ? 1 : reduce(-1, mod);
+        }
+
+        public long prefix(long v, long mod) {
+            long r = v % 4;
+            return r == 1 || r == 2 ? 0 : reduce(-1, mod); // sum over [1, v] minus chi(1)
+        }
+    };
+
+    /** f(i) = i^k for 0 <= k <= 3; prefix sums use Faulhaber with the divisions done exactly */
+    public static Weight power(int k) {
+        if (k < 0 || k > 3) throw new IllegalArgumentException("k must be in [0, 3], use a custom Weight");
+        return new Weight() {
+            public long prime(long p, long mod) {
+                long r = reduce(1, mod), b = reduce(p, mod);
+                for (int j = 0; j < k; j++) r = mul(r, b, mod);
+                return r;
+            }
+
+            public long prefix(long v, long mod) {
+                return sub(powerPrefix(v, k, mod), reduce(1, mod), mod);
+            }
+        };
+    }
+
+    /**
+     * S(v) for every v = floor(n / i): get(v) answers for those v and for all v <= sqrt(n).
+     */
+    public static final class Table {
+        public final long n;
+        private final int root;
+        private final long[] lo; // lo[v] = S(v), v <= root
+        private final long[] hi; // hi[i] = S(n / i), i <= root
+
+        Table(long n, int root, long[] lo, long[] hi) {
+            this.n = n;
+            this.root = root;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        /** Sum of f(p) over primes p <= v; v must be <= sqrt(n) or of the form n / i */
+        public long get(long v) {
+            if (v < 1) return 0;
+            if (v <= root) return lo[(int) v];
+            long i = n / v;
+            if (i > root || n / i != v) throw new IllegalArgumentException(v + " is not of the form n / i");
+            return hi[(int) i];
+        }
+    }
+
+    /** Runs the DP for weight f up to 1 <= n <= MAX_N, modulo mod (0 <= mod <= MAX_MOD, 0 = wrap mod 2^64) */
+    public static Table table(long n, Weight f, long mod) {
+        if (mod < 0 || mod > MAX_MOD) throw new IllegalArgumentException("mod must be in [0, " + MAX_MOD + "]");
+        if (n < 1 || n > MAX_N) throw new IllegalArgumentException("n must be in [1, (2^31 - 1)^2), got " + n);
+        int r = (int) SegmentedSieve.isqrt(n);
+        long[] lo = new long[r + 1];
+        long[] hi = new long[r + 1];
+        for (int v = 1; v <= r; v++) lo[v] = f.prefix(v, mod);
+        for (int i = 1; i <= r; i++) hi[i] = f.prefix(n / i, mod);
+
+        if (r >= 2) sieveOut(n, r, 2, f.prime(2, mod), mod, lo, hi);
+        int[] odd = SegmentedSieve.basePrimes(r);
+        for (int p : odd) {
+            if (p > r) break;
+            sieveOut(n, r, p, f.prime(p, mod), mod, lo, hi);
+        }
+        return new Table(n, r, lo, hi);
+    }
+
+    /** Removes the composites with least prime factor p from every S(v) with v >= p^2 */
+    private static void sieveOut(long n, int r, int p, long fp, long mod, long[] lo, long[] hi) {
+        long sp = lo[p - 1];
+        long p2 = (long) p * p;
+        // large v first: they read S(n / (i p)), which is still at the previous stage
+        long iMax = Math.min(r, n / p2);
+        for (int i = 1; i <= iMax; i++) {
+            long d = (long) i * p;
+            long s = d <= r ? hi[(int) d] : lo[(int) (n / d)];
+            hi[i] = sub(hi[i], mul(fp, sub(s, sp, mod), mod), mod);
+        }
+        // then small v downward, so lo[v / p] is read before it is updated
+        for (int v = r; v >= p2; v--) {
+            lo[v] = sub(lo[v], mul(fp, sub(lo[v / p], sp, mod), mod), mod);
+        }
+    }
+
+    /** pi(n) for n <= MAX_N */
+    public static long count(long n) {
+        checkN(n);
+        return n < 2 ? 0 : table(n, COUNT, 0).get(n);
+    }
+
+    /** Sum of p^k over primes p <= n <= MAX_N, modulo mod (0 = wrap mod 2^64), 0 <= k <= 3 */
+    public static long powerSum(long n, int k, long mod) {
+        checkN(n);
+        return n < 2 ? 0 : table(n, power(k), mod).get(n);
+    }
+
+    /**
+     * Exact sum of the primes <= n <= MAX_N: the DP runs mod 2^64 and mod 2^31 - 1, plus
+     * 2^31 - 19 once n passes 2^47, and the residues are combined by CRT. The sum is below
+     * n^2 / 2, which the product of the moduli exceeds.
+     */
+    public static BigInteger sum(long n) {
+        checkN(n);
+        if (n < 2) return BigInteger.ZERO;
+        BigInteger x = new BigInteger(Long.toUnsignedString(powerSum(n, 1, 0)));
+        BigInteger m = BigInteger.ONE.shiftLeft(64);
+        long[] moduli = n <= SUM_TWO_MODULI_MAX ? new long[]{M31} : new long[]{M31, M31B};
+        for (long p : moduli) {
+            // x += m t with t = (r - x) / m mod p
+            BigInteger bp = BigInteger.valueOf(p);
+            long r = powerSum(n, 1, p);
+            long t = mul(sub(r, x.mod(bp).longValue(), p), m.modInverse(bp).longValue(), p);
+            x = x.add(m.multiply(BigInteger.valueOf(t)));
+            m = m.multiply(bp);
+        }
+        return x;
+    }
+
+    private static void checkN(long n) {
+        if (n > MAX_N) throw new IllegalArgumentException("n must be below (2^31 - 1)^2, got " + n);
+    }
+
+    // ---------- arithmetic mod `mod`, with mod = 0 wrapping at 2^64 ----------
+
+    private static long reduce(long a, long mod) {
+        return mod == 0 ? a : Math.floorMod(a, mod);
+    }
+
+    private static long mul(long a, long b, long mod) {
+        return mod == 0 ? a * b : a * b % mod;
+    }
+
+    private static long sub(long a, long b, long mod) {
+        if (mod == 0) return a - b;
+        long d = a - b;
+        return d < 0 ? d + mod : d;
+    }
+
+    /** 1^k + 2^k + ... + v^k mod `mod`, dividing out the 2 and 6 before reducing */
+    private static long powerPrefix(long v, int k, long mod) {
+        if (k == 0) return reduce(v, mod);
+        long a = v, b = v + 1;
+        if ((a & 1) == 0) a >>= 1; else b >>= 1;
+        long tri = mul(reduce(a, mod), reduce(b, mod), mod); // v (v + 1) / 2
+        if (k == 1) return tri;
+        if (k == 3) return mul(tri, tri, mod);
+        // v (v + 1) (2v + 1) / 6: one of v, v + 1, 2v + 1 is divisible by 3
+        long c = 2 * v + 1;
+        if (a % 3 == 0) a /= 3;
+        else if (b % 3 == 0) b /= 3;
+        else c /= 3;
+        return mul(mul(reduce(a, mod), reduce(b, mod), mod), reduce(c, mod), mod);
+    }
+
+    public static void main(String[] args) {
+        long n = 1_000_000_000_000L;
+        long t = System.currentTimeMillis();
+        System.out.println("pi(1e12) = " + count(n) + " (expected 37607912018) in "
+                + (System.currentTimeMillis() - t) + " ms");
+        t = System.currentTimeMillis();
+        System.out.println("sum of primes <= 1e12 = " + sum(n) + " (expected 18435588552550705911377) in "
+                + (System.currentTimeMillis() - t) + " ms");
+        System.out.println("sum of p^2, p <= 1e9, mod 1e9+7 = " + powerSum(1_000_000_000L, 2, 1_000_000_007L));
+
+        // primes = 1 mod 4 below 1e10: (pi(n) - 1 + sum chi4(p)) / 2
+        long m = 10_000_000_000L;
+        long pi = count(m), chi = table(m, CHI4, 0).get(m);
+        System.out.println("primes = 1 mod 4 below 1e10: " + (pi - 1 + chi) / 2);
+    }
+}
@@ -0,0 +1,898 @@
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Self-initializing quadratic sieve for odd composites of roughly 30..100 digits.
+ *
+ * Relations are (a x + b)^2 = a Q(x) (mod N) with Q(x) = a x^2 + 2 b x + c smooth over a
+ * factor base of primes p with (kN / p) = 1, k a Knuth-Schroeppel multiplier, plus the primes
+ * dividing k, which have the single root x = -b / a:
+ *  - roots sqrt(kN) mod p come from TonelliShanks,
+ *  - a = q_1 ... q_s is a product of factor-base primes near sqrt(2kN) / M, and its
+ *    2^(s-1) values of b are walked in Gray-code order, so each new polynomial only
+ *    shifts every root by a precomputed 2 B_l / a mod p,
+ *  - [-M, M) is sieved block by block (SegmentedSieve's pattern), each block L1-sized with
+ *    every prime's next hit carried over to the next block,
+ *  - one large prime up to LARGE_PRIME_FACTOR * pmax is allowed; two partials sharing it
+ *    make a full relation.
+ * Worker threads pick their own a values. Every relation found is appended to an optional
+ * checkpoint file, which is read back on the next run for the same N, so a long job
+ * resumes instead of restarting.
+ *
+ * GF(2) stage: singleton columns are pruned; then up to DENSE_MAX columns dense Gaussian
+ * elimination on 64-bit words with a history block finds the dependencies, and past that
+ * Montgomery's block Lanczos does, in O(F) sparse products of 64 vectors at a time and
+ * O(F) words of memory (the dense matrix would take F^2 / 4 bytes, 400 MB at 100 digits).
+ * Each dependency gives gcd(X - Y, N).
+ *
+ * Usage:
+ *   BigInteger d = SIQS.findFactor(n);                          // all cores, no checkpoint
+ *   BigInteger d = SIQS.findFactor(n, Paths.get("n.rels"), 8);  // resumable
+ */
+public class SIQS {
+
+    // {digits, factor base size, sieve blocks}: [-M, M) spans blocks * BLOCK integers
+    private static final int[][] PARAMS = {
+            {30, 200, 1}, {40, 600, 2}, {50, 1_500, 2}, {60, 3_000, 4}, {70, 6_000, 6},
+            {80, 12_000, 8}, {90, 24_000, 10}, {100, 40_000, 12}};
+    private static final int BLOCK = 1 << 15;
+    private static final int LARGE_PRIME_FACTOR = 64;
+    // primes below this are not sieved (too many hits for too little log); the threshold
+    // is lowered by SMALL_PRIME_FUDGE to make up for them
+    private static final int MIN_SIEVE_PRIME = 23;
+    private static final int SMALL_PRIME_FUDGE = 10;
+    private static final int EXTRA_RELATIONS = 64;
+    // matrices with at most this many columns are solved dense, larger ones by block Lanczos
+    private static final int DENSE_MAX = 3_000;
+    private static final int LANCZOS_ATTEMPTS = 3;
+    private static final int[] MULTIPLIERS = {1, 3, 5, 7, 11, 13, 15, 17, 19, 21, 23, 29, 31, 33, 35, 37,
+            39, 41, 43, 47, 51, 53, 55, 57, 59, 61, 65, 67, 69, 71, 73};
+
+    private SIQS() {}
+
+    /** A nontrivial factor of n using all cores and no checkpoint */
+    public static BigInteger findFactor(BigInteger n) {
+        return findFactor(n, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * A nontrivial factor of the composite n, or null if every dependency was trivial.
+     * checkpoint (may be null) collects relations across runs for the same n.
+     */
+    public static BigInteger findFactor(BigInteger n, Path checkpoint, int threads) {
+        if (n.compareTo(BigInteger.valueOf(4)) < 0) throw new IllegalArgumentException("n must be composite");
+        if (!n.testBit(0)) return BigInteger.TWO;
+        BigInteger root = n.sqrt();
+        if (root.multiply(root).equals(n)) return root;
+
+        Sieve s = new Sieve(n);
+        BigInteger small = s.smallFactor();
+        if (small != null) return small;
+
+        try (Collector rels = new Collector(s, checkpoint)) {
+            if (!rels.done()) {
+                IntStream.range(0, Math.max(1, threads)).parallel().forEach(t -> s.work(rels));
+            }
+            return s.solve(rels.fulls());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** (a x + b)^2 = sign * prod fb[cols - 1] * large^2 (mod N), cols 0 = sign */
+    static final class Relation {
+        final BigInteger y;
+        final int[] cols; // with multiplicity
+        final long large; // 1, or the large prime (exponent 1 in a partial, 2 in a combined full)
+
+        Relation(BigInteger y, int[] cols, long large) {
+            this.y = y;
+            this.cols = cols;
+            this.large = large;
+        }
+    }
+
+    /** Factor base, parameters, sieving and the final linear algebra for one N */
+    static final class Sieve {
+        final BigInteger n, kn;
+        final int k, fbSize, m, blocks, threshold;
+        final long largeBound;
+        final int[] prime;    // prime[0] = 2
+        final int[] sqrtKn;   // sqrt(kN) mod p, 0 for the primes dividing k
+        final byte[] logp;
+        final int firstSieved; // first index with prime >= MIN_SIEVE_PRIME
+        final Set<BigInteger> usedA = Collections.synchronizedSet(new HashSet<>());
+
+        Sieve(BigInteger n) {
+            this.n = n;
+            int digits = n.toString().length();
+            int[] p = params(digits);
+            fbSize = p[1];
+            blocks = p[2];
+            m = blocks * BLOCK / 2;
+            k = multiplier(n);
+            kn = n.multiply(BigInteger.valueOf(k));
+
+            prime = new int[fbSize];
+            sqrtKn = new int[fbSize];
+            logp = new byte[fbSize];
+            prime[0] = 2;
+            sqrtKn[0] = kn.testBit(0) ? 1 : 0;
+            logp[0] = 1;
+            int count = 1, first = -1;
+            PrimitiveIterator.OfLong it = PrimeStream.iterator(3, Long.MAX_VALUE);
+            while (count < fbSize) {
+                long q = it.nextLong();
+                long r = kn.mod(BigInteger.valueOf(q)).longValue();
+                if (r != 0 && Montgomery.powMod(r, (q - 1) / 2, q) != 1) continue;
+                if (first < 0 && q >= MIN_SIEVE_PRIME) first = count;
+                prime[count] = (int) q;
+                sqrtKn[count] = r == 0 ? 0 : (int) TonelliShanks.tonelliShanks(r, q); // 0: q | k, one root
+                logp[count] = (byte) Math.round(Math.log(q) / Math.log(2));
+                count++;
+            }
+            firstSieved = first < 0 ? fbSize : first;
+            largeBound = (long) prime[fbSize - 1] * LARGE_PRIME_FACTOR;
+
+            // |Q(x)| <= M sqrt(kN / 2) over the interval
+            int qBits = kn.shiftRight(1).sqrt().multiply(BigInteger.valueOf(m)).bitLength();
+            threshold = qBits - (64 - Long.numberOfLeadingZeros(largeBound)) - SMALL_PRIME_FUDGE;
+        }
+
+        private static int[] params(int digits) {
+            if (digits <= PARAMS[0][0]) return PARAMS[0];
+            for (int i = 1; i < PARAMS.length; i++) {
+                if (digits <= PARAMS[i][0]) {
+                    int[] lo = PARAMS[i - 1], hi = PARAMS[i];
+                    double t = (double) (digits - lo[0]) / (hi[0] - lo[0]);
+                    return new int[]{digits, (int) (lo[1] + t * (hi[1] - lo[1])), (int) Math.round(lo[2] + t * (hi[2] - lo[2]))};
+                }
+            }
+            return PARAMS[PARAMS.length - 1];
+        }
+
+        /** Knuth-Schroeppel: the k maximizing the expected log contribution of small primes */
+        private static int multiplier(BigInteger n) {
+            int best = 1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int k : MULTIPLIERS) {
+                BigInteger kn = n.multiply(BigInteger.valueOf(k));
+                int mod8 = kn.intValue() & 7;
+                double score = -0.5 * Math.log(k)
+                        + (mod8 == 1 ? 2 : mod8 == 5 ? 1 : 0.5) * Math.log(2);
+                for (int q = 3; q < 2000; q += 2) {
+                    if (!BigInteger.valueOf(q).isProbablePrime(20)) continue;
+                    long r = kn.mod(BigInteger.valueOf(q)).longValue();
+                    if (r == 0) score += Math.log(q) / q;
+                    else if (Montgomery.powMod(r, (q - 1) / 2, q) == 1) score += 2 * Math.log(q) / (q - 1);
+                }
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = k;
+                }
+            }
+            return best;
+        }
+
+        /** A factor-base prime that divides n, if any */
+        BigInteger smallFactor() {
+            for (int p : prime) {
+                if (n.mod(BigInteger.valueOf(p)).signum() == 0) return BigInteger.valueOf(p);
+            }
+            for (int q = 3; q <= k; q += 2) {
+                if (n.mod(BigInteger.valueOf(q)).signum() == 0) return BigInteger.valueOf(q);
+            }
+            return null;
+        }
+
+        // ---------- relation collection ----------
+
+        /** One worker: new a, all its b, repeat until enough relations */
+        void work(Collector rels) {
+            int[] r1 = new int[fbSize], r2 = new int[fbSize];
+            int[] next1 = new int[fbSize], next2 = new int[fbSize];
+            int[] ainv = new int[fbSize];
+            byte[] sieve = new byte[BLOCK];
+            List<Relation> found = new ArrayList<>();
+            while (!rels.done()) {
+                int[] aIdx = chooseA();
+                if (aIdx == null) return;
+                int s = aIdx.length;
+                boolean[] inA = new boolean[fbSize];
+                BigInteger a = BigInteger.ONE;
+                for (int i : aIdx) {
+                    inA[i] = true;
+                    a = a.multiply(BigInteger.valueOf(prime[i]));
+                }
+
+                // B_l = (a / q_l) * (sqrt(kN) (a / q_l)^-1 mod q_l), so b = sum +-B_l has b^2 = kN mod a
+                BigInteger[] B = new BigInteger[s];
+                BigInteger b = BigInteger.ZERO;
+                for (int l = 0; l < s; l++) {
+                    int q = prime[aIdx[l]];
+                    BigInteger aq = a.divide(BigInteger.valueOf(q));
+                    long g = (long) sqrtKn[aIdx[l]] * aq.mod(BigInteger.valueOf(q)).modInverse(BigInteger.valueOf(q)).longValue() % q;
+                    if (g > q / 2) g = q - g;
+                    B[l] = aq.multiply(BigInteger.valueOf(g));
+                    b = b.add(B[l]);
+                }
+                int[][] bainv = new int[s][fbSize]; // 2 B_l / a mod p
+                for (int i = 1; i < fbSize; i++) {
+                    if (inA[i]) continue;
+                    int p = prime[i];
+                    BigInteger bp = BigInteger.valueOf(p);
+                    ainv[i] = (int) a.mod(bp).modInverse(bp).longValue();
+                    for (int l = 0; l < s; l++) bainv[l][i] = (int) (2 * B[l].mod(bp).longValue() * ainv[i] % p);
+                    long bm = b.mod(bp).longValue();
+                    r1[i] = (int) Math.floorMod((long) ainv[i] * (sqrtKn[i] - bm), (long) p);
+                    r2[i] = (int) Math.floorMod((long) ainv[i] * (-sqrtKn[i] - bm), (long) p);
+                }
+
+                for (int poly = 0; poly < 1 << (s - 1) && !rels.done(); poly++) {
+                    if (poly > 0) {
+                        // Gray code poly ^ (poly >> 1): bit v flips, and so does the sign of B_v in b
+                        int v = Integer.numberOfTrailingZeros(poly);
+                        boolean minus = (((poly ^ (poly >>> 1)) >>> v) & 1) == 1;
+                        b = minus ? b.subtract(B[v].shiftLeft(1)) : b.add(B[v].shiftLeft(1));
+                        for (int i = 1; i < fbSize; i++) {
+                            if (inA[i]) continue;
+                            int p = prime[i], d = bainv[v][i];
+                            // roots move by -e * 2 B_v / a
+                            if (minus) {
+                                r1[i] = r1[i] + d >= p ? r1[i] + d - p : r1[i] + d;
+                                r2[i] = r2[i] + d >= p ? r2[i] + d - p : r2[i] + d;
+                            } else {
+                                r1[i] = r1[i] - d < 0 ? r1[i] - d + p : r1[i] - d;
+                                r2[i] = r2[i] - d < 0 ? r2[i] - d + p : r2[i] - d;
+                            }
+                        }
+                    }
+                    BigInteger c = b.multiply(b).subtract(kn).divide(a);
+                    sievePoly(a, b, c, aIdx, inA, r1, r2, next1, next2, sieve, found);
+                    if (!found.isEmpty()) {
+                        rels.addAll(found);
+                        found.clear();
+                    }
+                }
+            }
+        }
+
+        /**
+         * s primes from a mid-range band whose product is close to sqrt(2kN) / M; null if the
+         * factor base is too small to form a new one.
+         */
+        private int[] chooseA() {
+            BigInteger target = kn.shiftLeft(1).sqrt().divide(BigInteger.valueOf(m));
+            double logTarget = target.bitLength() * Math.log(2);
+            double logMax = Math.log(prime[fbSize - 1]);
+            int s = Math.max(1, (int) Math.round(logTarget / Math.min(Math.log(2000), logMax * 0.8)));
+            double logQ = logTarget / s;
+            // band of indices with primes within a factor of 2 of the ideal q
+            int lo = firstSieved, hi = fbSize - 1;
+            while (lo < hi && Math.log(prime[lo]) < logQ - Math.log(2)) lo++;
+            while (hi > lo && Math.log(prime[hi]) > logQ + Math.log(2)) hi--;
+            if (hi - lo < 2 * s) {
+                lo = Math.max(firstSieved, lo - 2 * s);
+                hi = Math.min(fbSize - 1, hi + 2 * s);
+            }
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (int attempt = 0; attempt < 1000; attempt++) {
+                int[] idx = new int[s];
+                BigInteger a = BigInteger.ONE;
+                boolean ok = true;
+                for (int l = 0; l < s - 1 && ok; l++) {
+                    idx[l] = lo + rnd.nextInt(hi - lo + 1);
+                    if (sqrtKn[idx[l]] == 0) ok = false; // q | k: b^2 = kN mod q^2 has no root
+                    for (int j = 0; j < l; j++) if (idx[j] == idx[l]) ok = false;
+                    a = a.multiply(BigInteger.valueOf(prime[idx[l]]));
+                }
+                if (!ok) continue;
+                // last prime: the closest to target / a
+                long want = target.divide(a).min(BigInteger.valueOf(Integer.MAX_VALUE)).longValue();
+                int best = -1;
+                for (int i = firstSieved; i < fbSize; i++) {
+                    if (sqrtKn[i] == 0) continue;
+                    boolean taken = false;
+                    for (int j = 0; j < s - 1; j++) if (idx[j] == i) taken = true;
+                    if (taken) continue;
+                    if (best < 0 || Math.abs(prime[i] - want) < Math.abs(prime[best] - want)) best = i;
+                }
+                if (best < 0) continue;
+                idx[s - 1] = best;
+                a = a.multiply(BigInteger.valueOf(prime[best]));
+                if (usedA.add(a)) return idx;
+            }
+            return null;
+        }
+
+        private void sievePoly(BigInteger a, BigInteger b, BigInteger c, int[] aIdx, boolean[] inA,
+                               int[] r1, int[] r2, int[] next1, int[] next2, byte[] sieve, List<Relation> out) {
+            // sieve index i stands for x = i - M; root r of x maps to index (r + M) mod p
+            for (int i = firstSieved; i < fbSize; i++) {
+                if (inA[i]) continue;
+                int p = prime[i], shift = m % p;
+                next1[i] = r1[i] + shift >= p ? r1[i] + shift - p : r1[i] + shift;
+                next2[i] = r2[i] + shift >= p ? r2[i] + shift - p : r2[i] + shift;
+            }
+            for (int blk = 0; blk < blocks; blk++) {
+                Arrays.fill(sieve, (byte) 0);
+                for (int i = firstSieved; i < fbSize; i++) {
+                    if (inA[i]) continue;
+                    int p = prime[i];
+                    byte lg = logp[i];
+                    int pos = next1[i];
+                    for (; pos < BLOCK; pos += p) sieve[pos] += lg;
+                    next1[i] = pos - BLOCK;
+                    if (sqrtKn[i] == 0) continue; // single root
+                    pos = next2[i];
+                    for (; pos < BLOCK; pos += p) sieve[pos] += lg;
+                    next2[i] = pos - BLOCK;
+                }
+                for (int pos = 0; pos < BLOCK; pos++) {
+                    if ((sieve[pos] & 0xFF) < threshold) continue;
+                    Relation r = trialDivide(a, b, c, aIdx, inA, r1, r2, blk * BLOCK + pos);
+                    if (r != null) out.add(r);
+                }
+            }
+        }
+
+        /** Factors a Q(x) for the candidate at sieve index idx; null unless smooth enough */
+        private Relation trialDivide(BigInteger a, BigInteger b, BigInteger c, int[] aIdx, boolean[] inA,
+                                     int[] r1, int[] r2, int idx) {
+            long x = idx - m;
+            BigInteger bx = BigInteger.valueOf(x);
+            BigInteger q = a.multiply(bx).add(b.shiftLeft(1)).multiply(bx).add(c);
+            if (q.signum() == 0) return null;
+            int[] cols = new int[16];
+            int size = 0;
+            if (q.signum() < 0) {
+                cols[size++] = 0;
+                q = q.negate();
+            }
+            for (int i : aIdx) {
+                if (size == cols.length) cols = Arrays.copyOf(cols, size * 2);
+                cols[size++] = i + 1;
+            }
+            int twos = q.getLowestSetBit();
+            q = q.shiftRight(twos);
+            for (int t = 0; t < twos; t++) {
+                if (size == cols.length) cols = Arrays.copyOf(cols, size * 2);
+                cols[size++] = 1;
+            }
+            for (int i = 1; i < fbSize; i++) {
+                int p = prime[i];
+                if (!inA[i]) {
+                    // Q(x) = 0 mod p exactly on the two root classes, with x = idx - M
+                    int xr = (int) Math.floorMod(x, (long) p);
+                    if (xr != r1[i] && xr != r2[i]) continue;
+                }
+                BigInteger bp = BigInteger.valueOf(p);
+                BigInteger[] qr = q.divideAndRemainder(bp);
+                while (qr[1].signum() == 0) {
+                    if (size == cols.length) cols = Arrays.copyOf(cols, size * 2);
+                    cols[size++] = i + 1;
+                    q = qr[0];
+                    qr = q.divideAndRemainder(bp);
+                }
+            }
+            long large = 1;
+            if (!q.equals(BigInteger.ONE)) {
+                if (q.bitLength() > 62 || q.longValue() > largeBound || !MillerRabin.isPrime(q.longValue())) return null;
+                large = q.longValue();
+            }
+            return new Relation(a.multiply(bx).add(b), Arrays.copyOf(cols, size), large);
+        }
+
+        // ---------- linear algebra and square root ----------
+
+        /** Dependencies over GF(2), dense or by block Lanczos, then gcd(X - Y, N) for each */
+        BigInteger solve(List<Relation> rels) {
+            int cols = fbSize + 1;
+            // prune relations holding a column of odd weight no other relation can cancel
+            boolean[] alive = new boolean[rels.size()];
+            Arrays.fill(alive, true);
+            int[] weight = new int[cols];
+            for (Relation r : rels) for (int c : oddCols(r)) weight[c]++;
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int j = 0; j < rels.size(); j++) {
+                    if (!alive[j]) continue;
+                    for (int c : oddCols(rels.get(j))) {
+                        if (weight[c] == 1) {
+                            alive[j] = false;
+                            for (int c2 : oddCols(rels.get(j))) weight[c2]--;
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            int[] colMap = new int[cols];
+            int active = 0;
+            for (int c = 0; c < cols; c++) colMap[c] = weight[c] > 0 ? active++ : -1;
+            List<Relation> rows = new ArrayList<>();
+            for (int j = 0; j < rels.size() && rows.size() < active + EXTRA_RELATIONS; j++)
+                if (alive[j]) rows.add(rels.get(j));
+            int R = rows.size();
+            if (R == 0) return null;
+            int[][] odd = new int[R][]; // active columns of each row
+            for (int j = 0; j < R; j++) {
+                odd[j] = oddCols(rows.get(j));
+                for (int t = 0; t < odd[j].length; t++) odd[j][t] = colMap[odd[j][t]];
+            }
+            if (active <= DENSE_MAX) return solveDense(rows, odd, active);
+
+            BlockLanczos lanczos = new BlockLanczos(odd, active);
+            long[] bits = new long[(R + 63) >>> 6];
+            for (int attempt = 0; attempt < LANCZOS_ATTEMPTS; attempt++) {
+                long[] deps = lanczos.nullspace(ThreadLocalRandom.current().nextLong());
+                if (deps == null) continue;
+                for (int k = 0; k < 64; k++) {
+                    Arrays.fill(bits, 0);
+                    for (int j = 0; j < R; j++) if ((deps[j] >>> k & 1) != 0) bits[j >>> 6] |= 1L << j;
+                    BigInteger d = squareRoot(rows, bits);
+                    if (d != null) return d;
+                }
+            }
+            return null;
+        }
+
+        /** Gaussian elimination on the whole matrix, one history bit per row */
+        private BigInteger solveDense(List<Relation> rows, int[][] odd, int active) {
+            int R = rows.size();
+            int w = (active + 63) >>> 6, h = (R + 63) >>> 6;
+            long[][] mat = new long[R][w + h];
+            for (int j = 0; j < R; j++) {
+                for (int mc : odd[j]) mat[j][mc >>> 6] ^= 1L << mc;
+                mat[j][w + (j >>> 6)] |= 1L << j;
+            }
+            boolean[] pivot = new boolean[R];
+            for (int c = 0; c < active; c++) {
+                int word = c >>> 6;
+                long bit = 1L << c;
+                int p = -1;
+                for (int j = 0; j < R; j++) if (!pivot[j] && (mat[j][word] & bit) != 0) { p = j; break; }
+                if (p < 0) continue;
+                pivot[p] = true;
+                long[] pr = mat[p];
+                for (int j = 0; j < R; j++) {
+                    if (pivot[j] || (mat[j][word] & bit) == 0) continue;
+                    long[] row = mat[j];
+                    for (int t = word; t < w + h; t++) row[t] ^= pr[t];
+                }
+            }
+            for (int j = 0; j < R; j++) {
+                if (pivot[j]) continue;
+                BigInteger d = squareRoot(rows, Arrays.copyOfRange(mat[j], w, w + h));
+                if (d != null) return d;
+            }
+            return null;
+        }
+
+        /** Columns with odd exponent in r */
+        private static int[] oddCols(Relation r) {
+            int[] sorted = r.cols.clone();
+            Arrays.sort(sorted);
+            int[] out = new int[sorted.length];
+            int size = 0;
+            for (int i = 0; i < sorted.length; ) {
+                int j = i;
+                while (j < sorted.length && sorted[j] == sorted[i]) j++;
+                if (((j - i) & 1) == 1) out[size++] = sorted[i];
+                i = j;
+            }
+            return Arrays.copyOf(out, size);
+        }
+
+        /** gcd(X - Y, N) for the rows whose bit is set in dep, null if trivial */
+        private BigInteger squareRoot(List<Relation> rows, long[] dep) {
+            BigInteger x = BigInteger.ONE, y = BigInteger.ONE;
+            int[] exp = new int[fbSize + 1];
+            for (int j = 0; j < rows.size(); j++) {
+                if ((dep[j >>> 6] & (1L << j)) == 0) continue;
+                Relation r = rows.get(j);
+                x = x.multiply(r.y).mod(n);
+                y = y.multiply(BigInteger.valueOf(r.large)).mod(n);
+                for (int c : r.cols) exp[c]++;
+            }
+            for (int c = 1; c <= fbSize; c++) {
+                if (exp[c] == 0) continue;
+                y = y.multiply(BigInteger.valueOf(prime[c - 1]).modPow(BigInteger.valueOf(exp[c] / 2), n)).mod(n);
+            }
+            BigInteger d = x.subtract(y).gcd(n);
+            return d.equals(BigInteger.ONE) || d.equals(n) ? null : d;
+        }
+    }
+
+    /**
+     * Montgomery's block Lanczos over GF(2): nullspace vectors of the sparse matrix B whose
+     * column j has ones in the rows cols[j], found 64 at a time.
+     *
+     * It solves A z = A y for A = B^T B and a random block y, with A applied as B^T (B v) so only
+     * B is stored. Each step makes the next block of 64 vectors A-orthogonal to the last three
+     * by 64 x 64 corrections, keeping the columns whose V^T A V part is invertible (S_i) and
+     * carrying the rest over. It stops after about n / 63 steps when V^T A V = 0; then z - y and
+     * the final V lie mostly in the nullspace of A, and Gaussian elimination on the 128 columns
+     * of B [z - y | V] picks the combinations B itself annihilates.
+     */
+    static final class BlockLanczos {
+        private final int[][] cols;
+        private final int n, rows;
+
+        BlockLanczos(int[][] cols, int rows) {
+            this.cols = cols;
+            this.n = cols.length;
+            this.rows = rows;
+        }
+
+        /** out = B^T B v, through t = B v */
+        private void mulA(long[] v, long[] out, long[] t) {
+            mulB(v, t);
+            for (int j = 0; j < n; j++) {
+                long s = 0;
+                for (int c : cols[j]) s ^= t[c];
+                out[j] = s;
+            }
+        }
+
+        private void mulB(long[] v, long[] t) {
+            Arrays.fill(t, 0);
+            for (int j = 0; j < n; j++) {
+                long x = v[j];
+                if (x != 0) for (int c : cols[j]) t[c] ^= x;
+            }
+        }
+
+        /**
+         * Up to 64 nullspace vectors of B, vector k in bit k of every entry, or null when the
+         * iteration breaks down or finds none (retry with another seed).
+         */
+        long[] nullspace(long seed) {
+            SplittableRandom rnd = new SplittableRandom(seed);
+            long[] t = new long[rows];
+            long[] x = new long[n], v0 = new long[n];
+            for (int j = 0; j < n; j++) x[j] = rnd.nextLong();
+            mulA(x, v0, t); // solve A z = A x; x accumulates z - x
+            long[] v = v0.clone(), v1 = new long[n], v2 = new long[n], next = new long[n];
+            long[] winv1 = new long[64], winv2 = new long[64], vav1 = new long[64], va2v1 = new long[64];
+            int[] s0 = new int[64], s1 = new int[64];
+            for (int i = 0; i < 64; i++) s1[i] = i;
+            int dim1 = 64;
+            long mask1 = -1;
+            for (int iter = 0; ; iter++) {
+                if (iter > n / 60 + 100) return null;
+                mulA(v, next, t);
+                long[] vav = inner(v, next), va2v = inner(next, next);
+                boolean zero = true;
+                for (long r : vav) zero &= r == 0;
+                if (zero) break;
+                long[] winv = new long[64];
+                int dim0 = nonsingular(vav, s0, s1, dim1, winv);
+                if (dim0 == 0) return null;
+                long mask0 = 0;
+                for (int i = 0; i < dim0; i++) mask0 |= 1L << s0[i];
+                if (mask0 != -1) for (int j = 0; j < n; j++) next[j] &= mask0;
+
+                // V_(i+1) = A V S S^T + V D + V_(i-1) E + V_(i-2) F
+                long[] d = new long[64], f2 = new long[64];
+                for (int i = 0; i < 64; i++) d[i] = (va2v[i] & mask0) ^ vav[i];
+                d = mul(winv, d);
+                for (int i = 0; i < 64; i++) d[i] ^= 1L << i;
+                long[] e = mul(winv1, vav);
+                for (int i = 0; i < 64; i++) e[i] &= mask0;
+                long[] f = mul(vav1, winv1);
+                for (int i = 0; i < 64; i++) f[i] ^= 1L << i;
+                f = mul(winv2, f);
+                for (int i = 0; i < 64; i++) f2[i] = ((va2v1[i] & mask1) ^ vav1[i]) & mask0;
+                f = mul(f, f2);
+                mulAcc(v, d, next);
+                mulAcc(v1, e, next);
+                mulAcc(v2, f, next);
+                mulAcc(v, mul(winv, inner(v, v0)), x); // x += V Winv V^T v0
+
+                long[] r = v2;
+                v2 = v1;
+                v1 = v;
+                v = next;
+                next = r;
+                winv2 = winv1;
+                winv1 = winv;
+                vav1 = vav;
+                va2v1 = va2v;
+                int[] si = s1;
+                s1 = s0;
+                s0 = si;
+                dim1 = dim0;
+                mask1 = mask0;
+            }
+            return combine(x, v, t);
+        }
+
+        /** Vectors x c_lo + v c_hi for the 128-bit c with B x c_lo + B v c_hi = 0 */
+        private long[] combine(long[] x, long[] v, long[] t) {
+            long[] bx = new long[rows], bv = new long[rows];
+            mulB(x, bx);
+            mulB(v, bv);
+            // reduced row echelon form of the rows (bx[r], bv[r]), at most 128 pivots
+            long[][] piv = new long[128][];
+            int[] pivCol = new int[128];
+            int np = 0;
+            for (int r = 0; r < rows && np < 128; r++) {
+                long lo = bx[r], hi = bv[r];
+                for (int p = 0; p < np; p++) {
+                    int c = pivCol[p];
+                    if (((c < 64 ? lo : hi) >>> (c & 63) & 1) != 0) {
+                        lo ^= piv[p][0];
+                        hi ^= piv[p][1];
+                    }
+                }
+                if (lo == 0 && hi == 0) continue;
+                int c = lo != 0 ? Long.numberOfTrailingZeros(lo) : 64 + Long.numberOfTrailingZeros(hi);
+                for (int p = 0; p < np; p++) {
+                    if (((c < 64 ? piv[p][0] : piv[p][1]) >>> (c & 63) & 1) != 0) {
+                        piv[p][0] ^= lo;
+                        piv[p][1] ^= hi;
+                    }
+                }
+                piv[np] = new long[]{lo, hi};
+                pivCol[np++] = c;
+            }
+            boolean[] isPivot = new boolean[128];
+            for (int p = 0; p < np; p++) isPivot[pivCol[p]] = true;
+            // one nullspace vector per free column f: e_f plus the pivots that contain f
+            long[] deps = new long[n];
+            int found = 0;
+            for (int f = 0; f < 128 && found < 64; f++) {
+                if (isPivot[f]) continue;
+                long cLo = f < 64 ? 1L << f : 0, cHi = f < 64 ? 0 : 1L << (f - 64);
+                for (int p = 0; p < np; p++) {
+                    if (((f < 64 ? piv[p][0] : piv[p][1]) >>> (f & 63) & 1) == 0) continue;
+                    int c = pivCol[p];
+                    if (c < 64) cLo |= 1L << c;
+                    else cHi |= 1L << (c - 64);
+                }
+                boolean nonzero = false;
+                for (int j = 0; j < n; j++) {
+                    long bit = (Long.bitCount(x[j] & cLo) + Long.bitCount(v[j] & cHi)) & 1;
+                    deps[j] |= bit << found;
+                    nonzero |= bit != 0;
+                }
+                if (nonzero) found++;
+            }
+            return found == 0 ? null : deps;
+        }
+
+        /** a b for 64 x 64 matrices, row i as the bits of a[i] */
+        private static long[] mul(long[] a, long[] b) {
+            long[] c = new long[64];
+            for (int i = 0; i < 64; i++) {
+                long r = 0;
+                for (long bits = a[i]; bits != 0; bits &= bits - 1) r ^= b[Long.numberOfTrailingZeros(bits)];
+                c[i] = r;
+            }
+            return c;
+        }
+
+        /** v^T w for n x 64 blocks, through a table per byte of v */
+        private static long[] inner(long[] v, long[] w) {
+            long[][] tab = new long[8][256];
+            for (int j = 0; j < v.length; j++) {
+                long x = v[j];
+                if (x == 0) continue;
+                for (int k = 0; k < 8; k++) tab[k][(int) (x >>> (8 * k)) & 255] ^= w[j];
+            }
+            long[] c = new long[64];
+            for (int k = 0; k < 8; k++)
+                for (int idx = 1; idx < 256; idx++) {
+                    long y = tab[k][idx];
+                    if (y == 0) continue;
+                    for (int b = idx; b != 0; b &= b - 1) c[8 * k + Integer.numberOfTrailingZeros(b)] ^= y;
+                }
+            return c;
+        }
+
+        /** acc += v m for an n x 64 block v and a 64 x 64 m */
+        private static void mulAcc(long[] v, long[] m, long[] acc) {
+            long[][] tab = new long[8][256];
+            for (int k = 0; k < 8; k++)
+                for (int idx = 1; idx < 256; idx++)
+                    tab[k][idx] = tab[k][idx & (idx - 1)] ^ m[8 * k + Integer.numberOfTrailingZeros(idx)];
+            for (int j = 0; j < v.length; j++) {
+                long x = v[j], s = 0;
+                for (int k = 0; k < 8; k++) s ^= tab[k][(int) (x >>> (8 * k)) & 255];
+                acc[j] ^= s;
+            }
+        }
+
+        /**
+         * Columns S of t = V^T A V with t restricted to S invertible, preferring the columns not
+         * taken last step (lastS), and winv = that inverse padded with zeros. Returns |S|.
+         */
+        private static int nonsingular(long[] t, int[] s, int[] lastS, int lastDim, long[] winv) {
+            long[][] m = new long[64][2]; // [t | I]
+            for (int i = 0; i < 64; i++) {
+                m[i][0] = t[i];
+                m[i][1] = 1L << i;
+            }
+            long mask = 0;
+            for (int i = 0; i < lastDim; i++) {
+                mask |= 1L << lastS[i];
+                s[64 - lastDim + i] = lastS[i];
+            }
+            for (int i = 0, j = 0; i < 64; i++) if ((mask & 1L << i) == 0) s[j++] = i;
+
+            int dim = 0;
+            for (int i = 0; i < 64; i++) {
+                long bit = 1L << s[i];
+                int j = i;
+                while (j < 64 && (m[s[j]][0] & bit) == 0) j++;
+                if (j < 64) {
+                    long[] tmp = m[s[i]];
+                    m[s[i]] = m[s[j]];
+                    m[s[j]] = tmp;
+                    long[] pr = m[s[i]];
+                    for (int k = 0; k < 64; k++) {
+                        if (k != s[i] && (m[k][0] & bit) != 0) {
+                            m[k][0] ^= pr[0];
+                            m[k][1] ^= pr[1];
+                        }
+                    }
+                    s[dim++] = s[i];
+                    continue;
+                }
+                // no pivot in t: pivot on the identity half instead and drop the column
+                j = i;
+                while (j < 64 && (m[s[j]][1] & bit) == 0) j++;
+                if (j == 64) return 0;
+                long[] tmp = m[s[i]];
+                m[s[i]] = m[s[j]];
+                m[s[j]] = tmp;
+                long[] pr = m[s[i]];
+                for (int k = 0; k < 64; k++) {
+                    if (k != s[i] && (m[k][1] & bit) != 0) {
+                        m[k][0] ^= pr[0];
+                        m[k][1] ^= pr[1];
+                    }
+                }
+                pr[0] = pr[1] = 0;
+            }
+            mask = 0;
+            for (int i = 0; i < dim; i++) mask |= 1L << s[i];
+            for (int i = 0; i < 64; i++) winv[i] = m[i][1] & mask;
+            return dim;
+        }
+    }
+
+    /** Full relations (and pending partials), deduplicated by y, optionally mirrored to disk */
+    static final class Collector implements Closeable {
+        private final Sieve s;
+        private final int target;
+        private final List<Relation> fulls = new ArrayList<>();
+        private final Map<Long, Relation> partials = new HashMap<>();
+        private final Set<BigInteger> seen = new HashSet<>();
+        private final BufferedWriter out;
+        private volatile boolean done;
+
+        Collector(Sieve s, Path checkpoint) throws IOException {
+            this.s = s;
+            this.target = s.fbSize + 1 + EXTRA_RELATIONS;
+            String header = "SIQS " + s.n + " " + s.k + " " + s.fbSize;
+            boolean resume = false;
+            if (checkpoint != null && Files.exists(checkpoint)) {
+                try (BufferedReader in = Files.newBufferedReader(checkpoint, StandardCharsets.US_ASCII)) {
+                    if (header.equals(in.readLine())) {
+                        resume = true;
+                        String line;
+                        while ((line = in.readLine()) != null) {
+                            Relation r = parse(line);
+                            if (r != null) add(r);
+                        }
+                    }
+                }
+            }
+            if (checkpoint == null) {
+                out = null;
+            } else if (resume) {
+                out = Files.newBufferedWriter(checkpoint, StandardCharsets.US_ASCII, StandardOpenOption.APPEND);
+            } else {
+                out = Files.newBufferedWriter(checkpoint, StandardCharsets.US_ASCII);
+                out.write(header);
+                out.newLine();
+                out.flush();
+            }
+        }
+
+        boolean done() {
+            return done;
+        }
+
+        synchronized List<Relation> fulls() {
+            return new ArrayList<>(fulls);
+        }
+
+        /** Adds a batch of relations from one polynomial and writes them to the checkpoint */
+        synchronized void addAll(List<Relation> batch) {
+            for (Relation r : batch) {
+                if (!add(r)) continue;
+                if (out != null) {
+                    try {
+                        out.write(format(r));
+                        out.newLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+            if (out != null) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        /** false for a duplicate */
+        private boolean add(Relation r) {
+            if (!seen.add(r.y.mod(s.n))) return false;
+            if (r.large == 1) {
+                fulls.add(r);
+            } else {
+                Relation other = partials.putIfAbsent(r.large, r);
+                if (other != null) {
+                    int[] cols = Arrays.copyOf(other.cols, other.cols.length + r.cols.length);
+                    System.arraycopy(r.cols, 0, cols, other.cols.length, r.cols.length);
+                    fulls.add(new Relation(other.y.multiply(r.y).mod(s.n), cols, r.large));
+                }
+            }
+            if (fulls.size() >= target) done = true;
+            return true;
+        }
+
+        private static String format(Relation r) {
+            StringBuilder sb = new StringBuilder().append(r.y).append(' ').append(r.large);
+            for (int c : r.cols) sb.append(' ').append(c);
+            return sb.toString();
+        }
+
+        private static Relation parse(String line) {
+            String[] f = line.trim().split(" ");
+            if (f.length < 2) return null; // torn last line
+            try {
+                int[] cols = new int[f.length - 2];
+                for (int i = 0; i < cols.length; i++) cols[i] = Integer.parseInt(f[i + 2]);
+                return new Relation(new BigInteger(f[0]), cols, Long.parseLong(f[1]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out != null) out.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        BigInteger p = BigInteger.TEN.pow(24).nextProbablePrime();
+        BigInteger q = BigInteger.TEN.pow(25).add(BigInteger.valueOf(12345)).nextProbablePrime();
+        BigInteger n = p.multiply(q);
+        Path checkpoint = Files.createTempFile("siqs", ".rels");
+        long start = System.currentTimeMillis();
+        BigInteger d = findFactor(n, checkpoint, Runtime.getRuntime().availableProcessors());
+        System.out.println(n + " (" + n.toString().length() + " digits) = " + d + " * " + n.divide(d)
+                + " in " + (System.currentTimeMillis() - start) + " ms");
+
+        // a second run reads every relation back from the checkpoint and skips sieving
+        start = System.currentTimeMillis();
+        d = findFactor(n, checkpoint, 1);
+        System.out.println("resumed from " + checkpoint + ": " + d + " in " + (System.currentTimeMillis() - start) + " ms");
+        Files.delete(checkpoint);
+    }
+}
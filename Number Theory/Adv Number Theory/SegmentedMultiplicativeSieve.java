@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Segmented multiplicative-function sieve: phi, mu and tau over any [L, R] with R up to 2^63 - 1.
+ *
+ * [L, R] is cut into fixed windows that are sieved in parallel on the common ForkJoin pool,
+ * one task per pool thread, each reusing a single Window for its share of the windows.
+ * In a window every base prime p <= sqrt(R) visits its multiples, then its multiples of p^2,
+ * p^3, ..., multiplying in its contribution and the prime power it removes. Whatever is left,
+ * n / (product of removed powers), is 1 or a single prime above sqrt(R).
+ * The hot loops multiply, except that tau trades its factor k for k + 1 by one division for
+ * every value divisible by p^k, k >= 2. Beyond that each prime power costs one % per window
+ * to find its first multiple, and each value one division at the end for its large prime.
+ *
+ * Memory: O(window) per task plus the base primes up to sqrt(R), independent of R - L.
+ *
+ * Usage:
+ *   forEachWindow(1e12, 1e12 + 1e9, LinearMultiplicativeSieve.PHI | LinearMultiplicativeSieve.MU, w -> ...);
+ *   writeTo(path, 1e12, 1e12 + 1e9, LinearMultiplicativeSieve.PHI); // 8 bytes per value, little endian
+ */
+public class SegmentedMultiplicativeSieve {
+
+    /** Values per window */
+    static final int WINDOW = 1 << 18;
+
+    private static final int PHI = LinearMultiplicativeSieve.PHI;
+    private static final int MU = LinearMultiplicativeSieve.MU;
+    private static final int TAU = LinearMultiplicativeSieve.TAU;
+
+    private SegmentedMultiplicativeSieve() {}
+
+    /**
+     * One window of results: index i stands for lo + i, i < length.
+     * Arrays are null unless requested, and are reused by the worker task once the callback returns.
+     */
+    public static final class Window {
+        public long lo;
+        public int length;
+        public final long[] phi;
+        public final byte[] mu;
+        public final int[] tau;
+        private final long[] removed = new long[WINDOW]; // product of the prime powers found so far
+
+        Window(int flags) {
+            phi = (flags & PHI) != 0 ? new long[WINDOW] : null;
+            mu = (flags & MU) != 0 ? new byte[WINDOW] : null;
+            tau = (flags & TAU) != 0 ? new int[WINDOW] : null;
+        }
+
+        void sieve(long lo, long hi, int[] basePrimes) {
+            this.lo = lo;
+            this.length = (int) (hi - lo + 1);
+            int len = length;
+            java.util.Arrays.fill(removed, 0, len, 1L);
+            if (phi != null) java.util.Arrays.fill(phi, 0, len, 1L);
+            if (mu != null) java.util.Arrays.fill(mu, 0, len, (byte) 1);
+            if (tau != null) java.util.Arrays.fill(tau, 0, len, 1);
+
+            long root = SegmentedSieve.isqrt(hi);
+            if (2 <= root) sievePrime(2, lo, hi);
+            for (int k = 0; k < basePrimes.length; k++) {
+                long p = basePrimes[k] & 0xFFFFFFFFL;
+                if (p > root) break;
+                sievePrime(p, lo, hi);
+            }
+
+            for (int i = 0; i < len; i++) {
+                long n = lo + i;
+                if (n == 0) { // phi, mu, tau are undefined at 0
+                    if (phi != null) phi[i] = 0;
+                    if (mu != null) mu[i] = 0;
+                    if (tau != null) tau[i] = 0;
+                    continue;
+                }
+                if (removed[i] != n) { // one prime factor above sqrt(hi) is left
+                    long q = n / removed[i];
+                    if (phi != null) phi[i] *= q - 1;
+                    if (mu != null) mu[i] = (byte) -mu[i];
+                    if (tau != null) tau[i] *= 2;
+                }
+            }
+        }
+
+        private void sievePrime(long p, long lo, long hi) {
+            // exponent 1: every multiple of p
+            for (long m = firstMultiple(lo, p); m <= hi && m >= 0; m += p) {
+                int i = (int) (m - lo);
+                removed[i] *= p;
+                if (phi != null) phi[i] *= p - 1;
+                if (mu != null) mu[i] = (byte) -mu[i];
+                if (tau != null) tau[i] *= 2;
+            }
+            // exponent k >= 2: multiples of p^k gain one more p
+            int k = 1;
+            for (long pk = p; pk <= hi / p; ) {
+                pk *= p;
+                k++;
+                for (long m = firstMultiple(lo, pk); m <= hi && m >= 0; m += pk) {
+                    int i = (int) (m - lo);
+                    removed[i] *= p;
+                    if (phi != null) phi[i] *= p;
+                    if (mu != null) mu[i] = 0;
+                    if (tau != null) tau[i] = tau[i] / k * (k + 1);
+                }
+            }
+        }
+
+        private static long firstMultiple(long lo, long p) {
+            long r = lo % p;
+            return r == 0 ? lo : lo + (p - r);
+        }
+    }
+
+    /**
+     * Sieves [L, R] and hands every window to action, using all cores.
+     * Windows arrive in no particular order and from several threads at once;
+     * action must be thread-safe and must copy anything it keeps.
+     */
+    public static void forEachWindow(long L, long R, int flags, Consumer<Window> action) {
+        forEachWindow(L, R, flags, () -> action);
+    }
+
+    /**
+     * One task per pool thread, each with its own Window and its own action from perTask,
+     * taking every tasks-th window. Nothing outlives the call.
+     */
+    private static void forEachWindow(long L, long R, int flags, Supplier<Consumer<Window>> perTask) {
+        L = Math.max(L, 0);
+        if (L > R) return;
+        int[] basePrimes = SegmentedSieve.basePrimes(SegmentedSieve.isqrt(R));
+        long start = L, end = R, count = (R - L) / WINDOW + 1;
+        int tasks = (int) Math.min(count, ForkJoinPool.getCommonPoolParallelism() + 1); // + the caller
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            Window win = new Window(flags);
+            Consumer<Window> action = perTask.get();
+            for (long w = t; w < count; w += tasks) {
+                long lo = start + w * WINDOW;
+                long hi = end - lo < WINDOW ? end : lo + WINDOW - 1;
+                win.sieve(lo, hi, basePrimes);
+                action.accept(win);
+            }
+        });
+    }
+
+    /**
+     * Writes one function over [L, R] to a file, value for L first:
+     * PHI as 8-byte longs, MU as single bytes, TAU as 4-byte ints (little endian).
+     * Each task encodes a window into its own buffer and writes it at the window's offset.
+     */
+    public static void writeTo(Path path, long L, long R, int function) throws IOException {
+        int width = function == PHI ? 8 : function == MU ? 1 : function == TAU ? 4 : -1;
+        if (width < 0) throw new IllegalArgumentException("function must be exactly one of PHI, MU, TAU");
+        L = Math.max(L, 0);
+        if (L > R) throw new IllegalArgumentException("empty range");
+        long first = L;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            forEachWindow(L, R, function, () -> {
+                ByteBuffer buf = ByteBuffer.allocateDirect(WINDOW * width).order(ByteOrder.LITTLE_ENDIAN);
+                return w -> {
+                    buf.clear();
+                    for (int i = 0; i < w.length; i++) {
+                        if (width == 8) buf.putLong(w.phi[i]);
+                        else if (width == 1) buf.put(w.mu[i]);
+                        else buf.putInt(w.tau[i]);
+                    }
+                    buf.flip();
+                    try {
+                        for (long pos = (w.lo - first) * width; buf.hasRemaining(); ) pos += ch.write(buf, pos);
+                    } catch (IOException e) {
+                        throw new java.io.UncheckedIOException(e);
+                    }
+                };
+            });
+        } catch (java.io.UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long L = 1_000_000_000_000L, R = L + 20;
+        forEachWindow(L, R, PHI | MU | TAU, w -> {
+            for (int i = 0; i < w.length; i++)
+                System.out.println((w.lo + i) + ": phi=" + w.phi[i] + " mu=" + w.mu[i] + " tau=" + w.tau[i]);
+        });
+
+        // squarefree numbers in [1e12, 1e12 + 1e8]: about 6 / pi^2 of them
+        long[] squarefree = new long[1];
+        long start = System.nanoTime();
+        forEachWindow(L, L + 100_000_000L, MU, w -> {
+            long c = 0;
+            for (int i = 0; i < w.length; i++) if (w.mu[i] != 0) c++;
+            synchronized (squarefree) {
+                squarefree[0] += c;
+            }
+        });
+        System.out.println("Squarefree in [1e12, 1e12 + 1e8]: " + squarefree[0] + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        Path out = Files.createTempFile("phi", ".bin");
+        writeTo(out, 1, 1_000_000, PHI);
+        System.out.println("phi(1..1e6) written to " + out + " (" + Files.size(out) + " bytes)");
+    }
+}
@@ -1,35 +1,303 @@
 import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
 
 /**
- * Segmented sieve to generate primes in range [L, R] where R can be large (≤ 1e12 typically).
+ * Segmented sieve to generate primes in range [L, R] where R can be large (up to 2^63 - 1).
+ *
+ * The range is cut into chunks that are sieved in parallel on the common ForkJoin pool.
+ * Each chunk walks L1-sized segments (odd numbers only, one bit each). Base primes smaller
+ * than a segment are crossed off directly; larger ones sit in per-segment bucket lists so
+ * they only touch segments that contain one of their multiples.
+ * Memory per worker is O(segment + pi(sqrt(R))), independent of R - L.
  */
 public class SegmentedSieve {
 
-    public static List<Long> getPrimesInRange(long L, long R) {
-        int limit = (int)Math.sqrt(R) + 1;
-        boolean[] mark = new boolean[limit + 1];
-        List<Integer> primes = new ArrayList<>();
-        for (int i = 2; i <= limit; i++) if (!mark[i]) {
-            primes.add(i);
-            for (long j = 1L*i*i; j <= limit; j += i) mark[(int)j] = true;
-        }
-        int sz = (int)(R - L + 1);
-        boolean[] isPrime = new boolean[sz];
-        Arrays.fill(isPrime, true);
-        for (int p : primes) {
-            long start = Math.max(1L*p*p, ((L + p - 1)/p) * 1L * p);
-            for (long j = start; j <= R; j += p) isPrime[(int)(j - L)] = false;
-        }
-        List<Long> res = new ArrayList<>();
-        for (int i = 0; i < sz; i++) {
-            long v = L + i;
-            if (isPrime[i] && v >= 2) res.add(v);
+    /** Odd numbers per segment: 32 KB of bits, sized for the L1 data cache */
+    static final int SEGMENT_BITS = 1 << 18;
+    /** Integers covered by one segment */
+    static final long SEGMENT_SPAN = 2L * SEGMENT_BITS;
+    private static final int SEGMENT_WORDS = SEGMENT_BITS >>> 6;
+
+    /** floor(sqrt(Long.MAX_VALUE)): no base prime is ever larger */
+    private static final long MAX_BASE = 3_037_000_499L;
+
+    // Odd base primes stored as unsigned ints, grown on demand and shared by all workers
+    private static volatile int[] basePrimes = new int[0];
+    private static volatile long baseLimit = 0;
+
+    /** floor(sqrt(n)) for 0 <= n <= Long.MAX_VALUE */
+    static long isqrt(long n) {
+        long r = Math.min((long) Math.sqrt((double) n), MAX_BASE);
+        while (r * r > n) r--;
+        while (r < MAX_BASE && (r + 1) * (r + 1) <= n) r++;
+        return r;
+    }
+
+    /**
+     * Returns a table of odd primes (as unsigned ints, ascending) covering at least [3, limit].
+     * The table may extend past limit; callers must stop on their own bound.
+     */
+    static int[] basePrimes(long limit) {
+        if (limit <= baseLimit) return basePrimes;
+        synchronized (SegmentedSieve.class) {
+            if (limit > baseLimit) {
+                long newLimit = Math.min(MAX_BASE, Math.max(limit, Math.max(1L << 16, 2 * baseLimit)));
+                WheelSieve ws = new WheelSieve(newLimit);
+                int[] table = new int[(int) (ws.count() - 1)];
+                int[] k = {0};
+                ws.forEachPrime(p -> {
+                    if (p != 2) table[k[0]++] = (int) p;
+                });
+                basePrimes = table; // publish the table before the limit
+                baseLimit = newLimit;
+            }
+            return basePrimes;
+        }
+    }
+
+    /**
+     * Sieves [lo, hi] one segment at a time.
+     * After next() returns true, words holds the composite bits of the current segment:
+     * bit i stands for segLow + 2i + 1, and only bits in [fromBit, toBit) lie inside [lo, hi].
+     */
+    static final class Worker {
+        final long[] words = new long[SEGMENT_WORDS];
+        long segLow;
+        int fromBit, toBit;
+
+        private final long lo, hi, base, segments;
+        private long seg = -1;
+
+        private int[] table = new int[0];
+        private int activated = 0;
+
+        // primes below SEGMENT_BITS: bit offset of the next odd multiple in the coming segment
+        private int[] smallPrimes = new int[64];
+        private int[] smallNext = new int[64];
+        private int smallCount = 0;
+
+        // larger primes hit a segment at most once: ring of buckets keyed by segment index
+        private final int ringSize;
+        private final int[][] bucketPrime, bucketOff;
+        private final int[] bucketSize;
+
+        Worker(long lo, long hi) {
+            this.lo = Math.max(lo, 0);
+            this.hi = hi;
+            this.base = this.lo & ~1L;
+            this.segments = this.lo > hi ? 0 : (hi - base) / SEGMENT_SPAN + 1;
+            this.ringSize = (int) (isqrt(Math.max(hi, 0)) / SEGMENT_BITS) + 2;
+            this.bucketPrime = new int[ringSize][];
+            this.bucketOff = new int[ringSize][];
+            this.bucketSize = new int[ringSize];
+        }
+
+        /** Sieves the next segment; returns false once [lo, hi] is exhausted */
+        boolean next() {
+            if (++seg >= segments) return false;
+            segLow = base + seg * SEGMENT_SPAN;
+            long segHigh = hi - segLow < SEGMENT_SPAN ? hi : segLow + SEGMENT_SPAN - 1;
+            fromBit = seg == 0 ? (int) ((lo - segLow) >>> 1) : 0;
+            toBit = (int) ((segHigh - segLow + 1) >>> 1);
+
+            Arrays.fill(words, 0L);
+            if (segLow == 0) words[0] |= 1L; // 1 is not prime
+            activate(segHigh);
+
+            for (int i = 0; i < smallCount; i++) {
+                int p = smallPrimes[i];
+                int j = smallNext[i];
+                for (; j < SEGMENT_BITS; j += p) words[j >>> 6] |= 1L << j;
+                smallNext[i] = j - SEGMENT_BITS;
+            }
+
+            int slot = (int) (seg % ringSize);
+            int n = bucketSize[slot];
+            int[] ps = bucketPrime[slot], offs = bucketOff[slot];
+            bucketSize[slot] = 0;
+            for (int k = 0; k < n; k++) {
+                long p = ps[k] & 0xFFFFFFFFL;
+                int off = offs[k];
+                words[off >>> 6] |= 1L << off;
+                long nb = off + p;
+                schedule(seg + nb / SEGMENT_BITS, (int) (nb % SEGMENT_BITS), (int) p);
+            }
+            return true;
+        }
+
+        /** Brings in every base prime p with p^2 <= segHigh that is not active yet */
+        private void activate(long segHigh) {
+            long root = isqrt(segHigh);
+            while (true) {
+                if (activated == table.length) {
+                    table = basePrimes(root);
+                    if (activated == table.length) return;
+                }
+                long p = table[activated] & 0xFFFFFFFFL;
+                if (p > root) return;
+                activated++;
+
+                // offset from segLow to the first odd multiple of p that is >= max(p^2, segLow)
+                long pp = p * p;
+                long d;
+                if (pp >= segLow) {
+                    d = pp - segLow;
+                } else {
+                    long r = segLow % p;
+                    d = r == 0 ? 0 : p - r;
+                }
+                if ((d & 1) == 0) d += p;
+                long bit = (d - 1) >>> 1;
+
+                if (p < SEGMENT_BITS) {
+                    if (smallCount == smallPrimes.length) {
+                        smallPrimes = Arrays.copyOf(smallPrimes, smallCount * 2);
+                        smallNext = Arrays.copyOf(smallNext, smallCount * 2);
+                    }
+                    smallPrimes[smallCount] = (int) p;
+                    smallNext[smallCount++] = (int) bit;
+                } else {
+                    schedule(seg + bit / SEGMENT_BITS, (int) (bit % SEGMENT_BITS), (int) p);
+                }
+            }
+        }
+
+        private void schedule(long segment, int off, int p) {
+            if (segment >= segments) return;
+            int slot = (int) (segment % ringSize);
+            int n = bucketSize[slot];
+            if (bucketPrime[slot] == null) {
+                bucketPrime[slot] = new int[16];
+                bucketOff[slot] = new int[16];
+            } else if (n == bucketPrime[slot].length) {
+                bucketPrime[slot] = Arrays.copyOf(bucketPrime[slot], n * 2);
+                bucketOff[slot] = Arrays.copyOf(bucketOff[slot], n * 2);
+            }
+            bucketPrime[slot][n] = p;
+            bucketOff[slot][n] = off;
+            bucketSize[slot] = n + 1;
         }
+
+        /** Number of odd primes in the current segment */
+        int count() {
+            int c = 0;
+            for (int w = fromBit >>> 6; w <= (toBit - 1) >>> 6 && fromBit < toBit; w++) {
+                c += Long.bitCount(~words[w] & mask(w));
+            }
+            return c;
+        }
+
+        /** Calls action for each odd prime of the current segment, ascending */
+        void forEach(LongConsumer action) {
+            for (int w = fromBit >>> 6; w <= (toBit - 1) >>> 6 && fromBit < toBit; w++) {
+                long bits = ~words[w] & mask(w);
+                while (bits != 0) {
+                    int bit = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    action.accept(segLow + 2L * bit + 1);
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        /** Bits of word w that fall inside [fromBit, toBit) */
+        long mask(int w) {
+            long m = -1L;
+            int start = w << 6;
+            if (fromBit > start) m &= -1L << (fromBit - start);
+            if (toBit < start + 64) m &= (1L << (toBit - start)) - 1;
+            return m;
+        }
+    }
+
+    // ---------- parallel chunking ----------
+
+    /** Chunk length: long enough to amortise activating pi(sqrt(R)) base primes */
+    private static long chunkSpan(long R) {
+        long span = Math.max(16 * SEGMENT_SPAN, 4 * isqrt(R));
+        return (span + SEGMENT_SPAN - 1) / SEGMENT_SPAN * SEGMENT_SPAN;
+    }
+
+    private static long chunkCount(long L, long R, long span) {
+        return (R - L) / span + 1;
+    }
+
+    private static long chunkEnd(long start, long R, long span) {
+        return R - start < span ? R : start + span - 1;
+    }
+
+    /**
+     * Counts primes in [L, R] using all cores.
+     * Time: O((R - L) log log R / cores + sqrt(R)), Memory: O(sqrt(R)) per worker
+     */
+    public static long countPrimes(long L, long R) {
+        L = Math.max(L, 0);
+        if (R < 2 || L > R) return 0;
+        long span = chunkSpan(R);
+        long start = L;
+        long odd = LongStream.range(0, chunkCount(L, R, span)).parallel().map(i -> {
+            long lo = start + i * span;
+            Worker w = new Worker(lo, chunkEnd(lo, R, span));
+            long c = 0;
+            while (w.next()) c += w.count();
+            return c;
+        }).sum();
+        return odd + (L <= 2 && 2 <= R ? 1 : 0);
+    }
+
+    /** Calls action for every prime in [L, R] in ascending order (single thread, O(sqrt(R)) memory) */
+    public static void forEachPrime(long L, long R, LongConsumer action) {
+        L = Math.max(L, 0);
+        if (R < 2 || L > R) return;
+        if (L <= 2) action.accept(2);
+        Worker w = new Worker(L, R);
+        while (w.next()) w.forEach(action);
+    }
+
+    /** Returns all primes in [L, R] as a primitive array, sieving chunks in parallel */
+    public static long[] primesInRange(long L, long R) {
+        L = Math.max(L, 0);
+        if (R < 2 || L > R) return new long[0];
+        long span = chunkSpan(R);
+        long start = L;
+        long[][] parts = LongStream.range(0, chunkCount(L, R, span)).parallel().mapToObj(i -> {
+            long lo = start + i * span;
+            Worker w = new Worker(lo, chunkEnd(lo, R, span));
+            long[][] buf = {new long[1024]};
+            int[] n = {0};
+            while (w.next()) {
+                w.forEach(p -> {
+                    if (n[0] == buf[0].length) buf[0] = Arrays.copyOf(buf[0], n[0] * 2);
+                    buf[0][n[0]++] = p;
+                });
+            }
+            return Arrays.copyOf(buf[0], n[0]);
+        }).toArray(long[][]::new);
+
+        long total = L <= 2 ? 1 : 0;
+        for (long[] part : parts) total += part.length;
+        if (total > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Too many primes for an array: " + total);
+        long[] res = new long[(int) total];
+        int pos = 0;
+        if (L <= 2) res[pos++] = 2;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, res, pos, part.length);
+            pos += part.length;
+        }
+        return res;
+    }
+
+    public static List<Long> getPrimesInRange(long L, long R) {
+        long[] primes = primesInRange(L, R);
+        List<Long> res = new ArrayList<>(primes.length);
+        for (long p : primes) res.add(p);
         return res;
     }
 
     public static void main(String[] args) {
         System.out.println(getPrimesInRange(1_000_000_000L, 1_000_000_100L));
         System.out.println(getPrimesInRange(100, 200));
+        System.out.println("pi(1e9) = " + countPrimes(0, 1_000_000_000L) + " (expected 50847534)");
+        System.out.println("primes in [1e12, 1e12 + 1e8] = " + countPrimes(1_000_000_000_000L, 1_000_100_000_000L));
     }
 }
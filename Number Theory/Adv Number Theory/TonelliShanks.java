@@ -1,4 +1,3 @@
-import java.math.BigInteger;
 import java.util.*;
 
 /**
@@ -7,55 +6,55 @@ import java.util.*;
  */
 public class TonelliShanks {
 
-    private static long modPow(long a, long e, long mod) {
-        return BigInteger.valueOf(a).modPow(BigInteger.valueOf(e), BigInteger.valueOf(mod)).longValue();
-    }
-
-    // Legendre symbol (a|p)
-    private static int legendre(long a, long p) {
-        long ls = modPow(a, (p - 1) / 2, p);
-        if (ls == 1) return 1;
-        if (ls == p - 1) return -1;
+    // Legendre symbol (a|p), a in Montgomery form
+    private static int legendre(Montgomery m, long a) {
+        long ls = m.pow(a, (m.n - 1) / 2);
+        if (ls == m.one) return 1;
+        if (ls == m.minusOne) return -1;
         return 0;
     }
 
+    /** All arithmetic runs in Montgomery form, so p may be any odd prime below 2^63 */
     public static long tonelliShanks(long n, long p) {
-        n %= p;
+        n = Math.floorMod(n, p);
         if (n == 0) return 0;
         if (p == 2) return n;
-        if (legendre(n, p) != 1) return -1; // no solution
+        Montgomery m = new Montgomery(p);
+        long a = m.toMont(n);
+        if (legendre(m, a) != 1) return -1; // no solution
 
         if (p % 4 == 3) {
-            return modPow(n, (p + 1) / 4, p);
+            return m.fromMont(m.pow(a, (p + 1) / 4));
         }
 
         long q = p - 1;
         int s = 0;
         while ((q & 1) == 0) { q >>= 1; s++; }
 
-        long z = 2;
-        while (legendre(z, p) != -1) z++;
+        long z = m.add(m.one, m.one);
+        while (legendre(m, z) != -1) z = m.add(z, m.one);
 
-        long c = modPow(z, q, p);
-        long x = modPow(n, (q + 1) / 2, p);
-        long t = modPow(n, q, p);
-        int m = s;
+        long c = m.pow(z, q);
+        long x = m.pow(a, (q + 1) / 2);
+        long t = m.pow(a, q);
+        int e = s;
 
-        while (t != 1) {
+        while (t != m.one) {
             int i = 1;
-            long tt = (t * t) % p;
-            while (tt != 1) {
-                tt = (tt * tt) % p;
+            long tt = m.mul(t, t);
+            while (tt != m.one) {
+                tt = m.mul(tt, tt);
                 i++;
-                if (i == m) return -1;
+                if (i == e) return -1;
             }
-            long b = modPow(c, 1L << (m - i - 1), p);
-            x = (x * b) % p;
-            c = (b * b) % p;
-            t = (t * c) % p;
-            m = i;
+            long b = c;
+            for (int j = 0; j < e - i - 1; j++) b = m.mul(b, b); // c^(2^(e - i - 1))
+            x = m.mul(x, b);
+            c = m.mul(b, b);
+            t = m.mul(t, c);
+            e = i;
         }
-        return x;
+        return m.fromMont(x);
     }
 
     public static void main(String[] args) {
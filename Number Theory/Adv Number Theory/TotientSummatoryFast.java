@@ -6,19 +6,8 @@ import java.util.*;
  */
 public class TotientSummatoryFast {
 
-    private static long[] phiSieve(int n) {
-        long[] phi = new long[n + 1];
-        for (int i = 0; i <= n; i++) phi[i] = i;
-        for (int p = 2; p <= n; p++) {
-            if (phi[p] == p) {
-                for (int k = p; k <= n; k += p) phi[k] -= phi[k] / p;
-            }
-        }
-        return phi;
-    }
-
     public static long totientSumNaive(int n) {
-        long[] phi = phiSieve(n);
+        int[] phi = LinearMultiplicativeSieve.phi(n);
         long s = 0;
         for (int i = 1; i <= n; i++) s += phi[i];
         return s;
@@ -0,0 +1,171 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * BulkFactorization - factorizes whole int arrays into one flat CSR (compressed sparse row) table.
+ *
+ * The factors of values[i] are primes[k]^exponents[k] for offsets[i] <= k < offsets[i + 1],
+ * primes ascending. Three arrays replace one map per value, and downstream passes
+ * (divisor counts, radicals, totients) read them without touching a single object.
+ *
+ * Two parallel passes over a shared SPF table: the first counts distinct primes per value
+ * to build offsets, the second writes every row into its own slice of the flat arrays.
+ *
+ * Usage:
+ *   int[] spf = LinearSieveWithSPF.spf(maxValue);
+ *   BulkFactorization.FactorTable t = BulkFactorization.factorAll(values, spf);
+ *   long[] tau = t.divisorCounts();
+ */
+public class BulkFactorization {
+
+    // values per parallel task: large enough to amortise scheduling, small enough to balance
+    private static final int CHUNK = 1 << 16;
+
+    private BulkFactorization() {}
+
+    /** CSR factorization of a batch of values; row i belongs to values[i] */
+    public static final class FactorTable {
+        public final int[] offsets;    // length size() + 1
+        public final int[] primes;     // flat, ascending within each row
+        public final byte[] exponents; // exponents[k] belongs to primes[k]; at most 30 for an int
+
+        FactorTable(int[] offsets, int[] primes, byte[] exponents) {
+            this.offsets = offsets;
+            this.primes = primes;
+            this.exponents = exponents;
+        }
+
+        /** Number of rows (values factorized) */
+        public int size() {
+            return offsets.length - 1;
+        }
+
+        /** Number of distinct primes of row i */
+        public int distinct(int i) {
+            return offsets[i + 1] - offsets[i];
+        }
+
+        /** tau(values[i]) for every row */
+        public long[] divisorCounts() {
+            long[] res = new long[size()];
+            IntStream.range(0, res.length).parallel().forEach(i -> {
+                long c = 1;
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) c *= exponents[k] + 1;
+                res[i] = c;
+            });
+            return res;
+        }
+
+        /** rad(values[i]) = product of the distinct primes, for every row */
+        public int[] radicals() {
+            int[] res = new int[size()];
+            IntStream.range(0, res.length).parallel().forEach(i -> {
+                int r = 1;
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) r *= primes[k];
+                res[i] = r;
+            });
+            return res;
+        }
+
+        /** phi(values[i]) for every row */
+        public int[] totients() {
+            int[] res = new int[size()];
+            IntStream.range(0, res.length).parallel().forEach(i -> {
+                long phi = 1;
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                    long p = primes[k];
+                    phi *= p - 1;
+                    for (int e = 1; e < exponents[k]; e++) phi *= p;
+                }
+                res[i] = (int) phi;
+            });
+            return res;
+        }
+
+        /** Row i as "{p=e, ...}", for printing */
+        public String row(int i) {
+            StringBuilder sb = new StringBuilder("{");
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                if (k > offsets[i]) sb.append(", ");
+                sb.append(primes[k]).append('=').append(exponents[k]);
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    /** Factorizes values (each >= 1) with an SPF table built up to their maximum */
+    public static FactorTable factorAll(int[] values) {
+        int max = 1;
+        for (int v : values) max = Math.max(max, v);
+        return factorAll(values, LinearSieveWithSPF.spf(max));
+    }
+
+    /**
+     * Factorizes values (each in [1, spf.length - 1]) over a shared SPF table,
+     * e.g. from PrimeUtils.computeSPF or LinearSieveWithSPF.spf.
+     * Time: O(total prime factors / cores), Memory: one int + one byte per distinct factor
+     */
+    public static FactorTable factorAll(int[] values, int[] spf) {
+        int n = values.length;
+        int chunks = (n + CHUNK - 1) / CHUNK;
+
+        // pass 1: distinct prime count per value, then prefix sums into offsets
+        int[] offsets = new int[n + 1];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            for (int i = c * CHUNK, end = Math.min(n, i + CHUNK); i < end; i++) {
+                int x = values[i];
+                if (x < 1 || x >= spf.length)
+                    throw new IllegalArgumentException("value outside SPF table: " + x);
+                int d = 0;
+                while (x > 1) {
+                    int p = spf[x];
+                    do x /= p; while (x % p == 0);
+                    d++;
+                }
+                offsets[i + 1] = d;
+            }
+        });
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+            if (offsets[i + 1] < 0) throw new IllegalArgumentException("Too many factors for one table");
+        }
+
+        // pass 2: every value writes its own slice, so no synchronisation is needed
+        int[] primes = new int[offsets[n]];
+        byte[] exponents = new byte[offsets[n]];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            for (int i = c * CHUNK, end = Math.min(n, i + CHUNK); i < end; i++) {
+                int x = values[i];
+                int k = offsets[i];
+                while (x > 1) {
+                    int p = spf[x];
+                    int e = 0;
+                    do {
+                        x /= p;
+                        e++;
+                    } while (x % p == 0);
+                    primes[k] = p;
+                    exponents[k++] = (byte) e;
+                }
+            }
+        });
+        return new FactorTable(offsets, primes, exponents);
+    }
+
+    public static void main(String[] args) {
+        int[] values = {1, 12, 84, 97, 360, 1_000_000, 999_983};
+        FactorTable t = factorAll(values);
+        for (int i = 0; i < values.length; i++) System.out.println(values[i] + " = " + t.row(i));
+        System.out.println("tau: " + Arrays.toString(t.divisorCounts()));
+        System.out.println("rad: " + Arrays.toString(t.radicals()));
+        System.out.println("phi: " + Arrays.toString(t.totients()));
+
+        int n = 10_000_000;
+        int[] big = new int[n];
+        for (int i = 0; i < n; i++) big[i] = i + 1;
+        long start = System.nanoTime();
+        FactorTable all = factorAll(big, LinearSieveWithSPF.spf(n));
+        System.out.println("Factorized 1.." + n + " (" + all.primes.length + " prime powers) in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -7,7 +7,7 @@ import java.util.*;
  *  - pairwiseCombine(a1, m1, a2, m2) -> long[] {x, lcmMod} or null if no solution
  *  - solveCRT(a[], m[]) -> long[] {x, M} or null if no solution
  *
- * Note: Uses extendedGCD from GCDUtils (expects extendedGCD(long a, long b) returning [g, x, y]).
+ * Note: Uses extendedGCD from GCDUtils (the iterative extendedGCD(a, b, out) writing [g, x, y]).
  */
 public class CRTUtils {
 
@@ -20,17 +20,26 @@ public class CRTUtils {
      * or null if incompatible.
      */
     public static long[] pairwiseCombine(long a1, long m1, long a2, long m2) {
+        long[] out = new long[3];
+        return combine(a1, m1, a2, m2, out) ? new long[]{out[0], out[1]} : null;
+    }
+
+    /**
+     * pairwiseCombine into out[0..1] = {x, l}; false if incompatible.
+     * out needs length 3: it is also the scratch for extendedGCD, so nothing is allocated.
+     */
+    private static boolean combine(long a1, long m1, long a2, long m2, long[] out) {
         // Normalize
         a1 = mod(a1, m1);
         a2 = mod(a2, m2);
 
         // Solve: m1 * s + m2 * t = g
-        long[] eg = GCDUtils.extendedGCD(m1, m2); // returns [g, x, y] such that m1*x + m2*y = g
+        long[] eg = GCDUtils.extendedGCD(m1, m2, out); // [g, x, y] such that m1*x + m2*y = g
         long g = eg[0];
         long xCoeff = eg[1]; // coefficient for m1 in the representation (unused directly)
         // long yCoeff = eg[2];
 
-        if ((a2 - a1) % g != 0) return null; // no solution
+        if ((a2 - a1) % g != 0) return false; // no solution
 
         long l = (m1 / g) * m2; // lcm
         // Compute solution:
@@ -38,8 +47,9 @@ public class CRTUtils {
         long mult = (diff / g) % (m2 / g);
         long k = ( (xCoeff % (m2 / g)) * mult ) % (m2 / g); // multiplier
         long result = a1 + m1 * k;
-        result = mod(result, l);
-        return new long[]{result, l};
+        out[0] = mod(result, l);
+        out[1] = l;
+        return true;
     }
 
     /**
@@ -51,9 +61,9 @@ public class CRTUtils {
         if (a.length != m.length) throw new IllegalArgumentException("Lengths must match");
         long x = mod(a[0], m[0]);
         long mod = m[0];
+        long[] comb = new long[3]; // reused by every step
         for (int i = 1; i < a.length; i++) {
-            long[] comb = pairwiseCombine(x, mod, a[i], m[i]);
-            if (comb == null) return null;
+            if (!combine(x, mod, a[i], m[i], comb)) return null;
             x = comb[0];
             mod = comb[1];
         }
@@ -4,7 +4,7 @@ import java.util.*;
  * CombinatoricsUtils - factorials, inverse factorials and nCr under prime modulus.
  *
  * Usage:
- *   CombinatoricsUtils.init(maxN, MOD);
+ *   CombinatoricsUtils.init(maxN, MOD);          // or init(maxN, Modulus.of(MOD))
  *   long comb = CombinatoricsUtils.nCr(n, r);
  *
  * Also supports Lucas theorem: nCrLucas(n, r, p) (p must be prime)
@@ -12,7 +12,7 @@ import java.util.*;
 public class CombinatoricsUtils {
 
     private static int MAXN = 0;
-    private static long MOD = 1;
+    private static Modulus MOD = Modulus.of(1);
     private static long[] fact = null;
     private static long[] invFact = null;
 
@@ -22,14 +22,27 @@ public class CombinatoricsUtils {
      * Initialize factorials up to maxN modulo mod (mod must be prime for inverses to work via Fermat).
      */
     public static void init(int maxN, long mod) {
+        init(maxN, Modulus.of(mod));
+    }
+
+    /**
+     * Same as init(maxN, mod.m); a prime below 2^63 works, tables are filled without division.
+     * Primes below 2^31 go through ModArrays.factorials, which vectorizes the chains.
+     */
+    public static void init(int maxN, Modulus mod) {
         MAXN = maxN;
         MOD = mod;
+        if (mod.m >= 2 && mod.m < ModArrays.MAX_MODULUS) {
+            fact = ModArrays.factorials(MAXN, mod.m);
+            invFact = ModArrays.inverseFactorials(fact, mod.m);
+            return;
+        }
         fact = new long[MAXN + 1];
         invFact = new long[MAXN + 1];
-        fact[0] = 1;
-        for (int i = 1; i <= MAXN; i++) fact[i] = (fact[i - 1] * i) % MOD;
-        invFact[MAXN] = ModularArithmetic.power(fact[MAXN], MOD - 2, MOD); // Fermat inverse
-        for (int i = MAXN - 1; i >= 0; i--) invFact[i] = (invFact[i + 1] * (i + 1)) % MOD;
+        fact[0] = MOD.reduce(1);
+        for (int i = 1; i <= MAXN; i++) fact[i] = MOD.mul(fact[i - 1], MOD.reduce(i));
+        invFact[MAXN] = MOD.pow(fact[MAXN], MOD.m - 2); // Fermat inverse
+        for (int i = MAXN - 1; i >= 0; i--) invFact[i] = MOD.mul(invFact[i + 1], MOD.reduce(i + 1));
     }
 
     /**
@@ -38,7 +51,7 @@ public class CombinatoricsUtils {
     public static long nCr(int n, int r) {
         if (r < 0 || r > n) return 0;
         if (n > MAXN) throw new IllegalArgumentException("n > MAXN: reinit with larger MAXN");
-        return (((fact[n] * invFact[r]) % MOD) * invFact[n - r]) % MOD;
+        return MOD.mul(MOD.mul(fact[n], invFact[r]), invFact[n - r]);
     }
 
     /**
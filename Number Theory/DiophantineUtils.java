@@ -39,14 +39,25 @@ public class DiophantineUtils {
      * Time: O(log min(a, b))
      */
     public static GcdTriplet extendedGcd(long a, long b) {
-        if (b == 0)
-            return new GcdTriplet(a, 1, 0);
-        GcdTriplet next = extendedGcd(b, a % b);
-        return new GcdTriplet(
-                next.gcd,
-                next.y,
-                next.x - (a / b) * next.y
-        );
+        return extendedGcd(a, b, new GcdTriplet(0, 0, 0));
+    }
+
+    /**
+     * Same as extendedGcd(a, b), written into out and returned.
+     * Iterative: no recursion and no allocation when out is reused.
+     */
+    public static GcdTriplet extendedGcd(long a, long b, GcdTriplet out) {
+        long x0 = 1, x1 = 0, y0 = 0, y1 = 1;
+        while (b != 0) {
+            long q = a / b;
+            long t = a - q * b; a = b; b = t;
+            t = x0 - q * x1; x0 = x1; x1 = t;
+            t = y0 - q * y1; y0 = y1; y1 = t;
+        }
+        out.gcd = a;
+        out.x = x0;
+        out.y = y0;
+        return out;
     }
 
     // ---------- LINEAR DIOPHANTINE EQUATION a*x + b*y = c ----------
@@ -111,9 +122,14 @@ public class DiophantineUtils {
      * Returns (a^-1 mod m), or -1 if it doesn't exist.
      */
     public static long modInverse(long a, long m) {
-        GcdTriplet g = extendedGcd(a, m);
-        if (g.gcd != 1) return -1; // inverse doesn't exist
-        long inv = g.x % m;
+        long r0 = a, r1 = m, x0 = 1, x1 = 0; // only the coefficient of a is needed
+        while (r1 != 0) {
+            long q = r0 / r1;
+            long t = r0 - q * r1; r0 = r1; r1 = t;
+            t = x0 - q * x1; x0 = x1; x1 = t;
+        }
+        if (r0 != 1) return -1; // inverse doesn't exist
+        long inv = x0 % m;
         if (inv < 0) inv += m;
         return inv;
     }
@@ -157,9 +173,10 @@ public class DiophantineUtils {
             long[] sol = solveLinearDiophantine(mod, -m2, a2 - x);
             if (sol == null) return -1;
             long t = sol[0];
-            x = (x + mod * t) % (mod * m2 / GCDUtils.gcd(mod, m2));
-            if (x < 0) x += (mod * m2 / GCDUtils.gcd(mod, m2));
-            mod = mod * m2 / GCDUtils.gcd(mod, m2);
+            long lcm = mod / GCDUtils.gcd(mod, m2) * m2;
+            x = (x + mod * t) % lcm;
+            if (x < 0) x += lcm;
+            mod = lcm;
         }
         return x;
     }
@@ -27,21 +27,11 @@ public class EulerFunctions {
     }
 
     /**
-     * Precomputes φ(i) for all i ≤ n using a modified sieve
-     * Time Complexity: O(n log log n)
+     * Precomputes φ(i) for all i ≤ n using the linear sieve
+     * Time Complexity: O(n)
      */
     public static int[] phiSieve(int n) {
-        int[] phi = new int[n + 1];
-        for (int i = 0; i <= n; i++)
-            phi[i] = i;
-
-        for (int p = 2; p <= n; p++) {
-            if (phi[p] == p) { // p is prime
-                for (int k = p; k <= n; k += p)
-                    phi[k] -= phi[k] / p;
-            }
-        }
-        return phi;
+        return LinearMultiplicativeSieve.phi(n);
     }
 
     /**
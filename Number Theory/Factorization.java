@@ -0,0 +1,212 @@
+import java.util.*;
+
+/**
+ * Factorization - immutable prime factorization n = prime(0)^exponent(0) * ... , primes ascending,
+ * with the arithmetic functions that only need the factorization.
+ *
+ * Factorization.of(n) is served from FactorizationCache.DEFAULT, so moduli and group orders
+ * that come back again and again (primitive roots, power towers) are factorized once.
+ * Misses are factorized with PollardRho.
+ *
+ * Usage:
+ *   Factorization f = Factorization.of(1_000_000_007L - 1);
+ *   f.phi(); f.lambda(); f.divisorCount(); f.divisorSum();
+ *   long[] d = f.divisors(); // ascending
+ */
+public final class Factorization {
+
+    public final long n;
+    private final long[] primes;
+    private final int[] exponents;
+
+    Factorization(long n, long[] primes, int[] exponents) {
+        this.n = n;
+        this.primes = primes;
+        this.exponents = exponents;
+    }
+
+    /** Factorization of n >= 1, through the shared cache */
+    public static Factorization of(long n) {
+        return FactorizationCache.DEFAULT.get(n);
+    }
+
+    /** Factorizes n >= 1 with PollardRho, bypassing any cache */
+    public static Factorization compute(long n) {
+        if (n < 1) throw new IllegalArgumentException("n must be >= 1");
+        List<Long> factors = PollardRho.factorize(n); // sorted, with repetition
+        int distinct = 0;
+        for (int i = 0; i < factors.size(); i++) if (i == 0 || !factors.get(i).equals(factors.get(i - 1))) distinct++;
+        long[] primes = new long[distinct];
+        int[] exponents = new int[distinct];
+        int k = -1;
+        for (int i = 0; i < factors.size(); i++) {
+            long p = factors.get(i);
+            if (k < 0 || primes[k] != p) primes[++k] = p;
+            exponents[k]++;
+        }
+        return new Factorization(n, primes, exponents);
+    }
+
+    /** Number of distinct primes */
+    public int size() {
+        return primes.length;
+    }
+
+    public long prime(int i) {
+        return primes[i];
+    }
+
+    public int exponent(int i) {
+        return exponents[i];
+    }
+
+    /** Distinct primes, ascending */
+    public List<Long> primes() {
+        List<Long> list = new ArrayList<>(primes.length);
+        for (long p : primes) list.add(p);
+        return list;
+    }
+
+    /** Moebius mu(n): 0 if any exponent exceeds 1, else (-1)^size() */
+    public int mobius() {
+        for (int e : exponents) if (e > 1) return 0;
+        return (primes.length & 1) == 0 ? 1 : -1;
+    }
+
+    /** Every divisor of n, ascending; built from the exponent vector in O(tau(n) log tau(n)) */
+    public long[] divisors() {
+        long[] d = new long[(int) divisorCount()]; // tau(n) <= 103680 for n < 2^63
+        d[0] = 1;
+        int size = 1;
+        for (int i = 0; i < primes.length; i++) {
+            int prev = size;
+            long pk = 1;
+            for (int e = 0; e < exponents[i]; e++) {
+                pk *= primes[i];
+                for (int j = 0; j < prev; j++) d[size++] = d[j] * pk;
+            }
+        }
+        Arrays.sort(d);
+        return d;
+    }
+
+    /**
+     * Lazy, unordered walk over the divisors: an odometer over the exponent vector, one
+     * multiplication or division per step and nothing stored.
+     */
+    public PrimitiveIterator.OfLong divisorIterator() {
+        return new PrimitiveIterator.OfLong() {
+            private final int[] e = new int[primes.length];
+            private long current = 1;
+            private boolean more = true;
+
+            @Override
+            public boolean hasNext() {
+                return more;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!more) throw new NoSuchElementException();
+                long d = current;
+                int i = 0;
+                for (; i < primes.length; i++) {
+                    if (e[i] < exponents[i]) {
+                        e[i]++;
+                        current *= primes[i];
+                        break;
+                    }
+                    for (; e[i] > 0; e[i]--) current /= primes[i]; // wrap this digit back to p^0
+                }
+                more = i < primes.length;
+                return d;
+            }
+        };
+    }
+
+    /** Euler's totient: product of p^(e-1) (p - 1) */
+    public long phi() {
+        long phi = 1;
+        for (int i = 0; i < primes.length; i++) {
+            phi *= primes[i] - 1;
+            for (int e = 1; e < exponents[i]; e++) phi *= primes[i];
+        }
+        return phi;
+    }
+
+    /**
+     * Carmichael's lambda: exponent of the unit group mod n.
+     * lcm of lambda(p^e), which is phi(p^e) except lambda(2^e) = 2^(e-2) for e >= 3.
+     */
+    public long lambda() {
+        long lambda = 1;
+        for (int i = 0; i < primes.length; i++) {
+            long p = primes[i];
+            int e = exponents[i];
+            long l = p == 2 ? (e <= 2 ? e : 1L << (e - 2)) : p - 1;
+            if (p != 2) for (int j = 1; j < e; j++) l *= p;
+            lambda = lambda / GCDUtils.gcd(lambda, l) * l;
+        }
+        return lambda;
+    }
+
+    /** tau(n): product of (e + 1) */
+    public long divisorCount() {
+        long count = 1;
+        for (int e : exponents) count *= e + 1;
+        return count;
+    }
+
+    /** sigma(n): product of (p^(e+1) - 1) / (p - 1); throws ArithmeticException past 2^63 */
+    public long divisorSum() {
+        long sum = 1;
+        for (int i = 0; i < primes.length; i++) {
+            long term = 1, pow = 1;
+            for (int e = 0; e < exponents[i]; e++) {
+                pow *= primes[i];
+                term = Math.addExact(term, pow);
+            }
+            sum = Math.multiplyExact(sum, term);
+        }
+        return sum;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Factorization && ((Factorization) o).n == n;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(n);
+    }
+
+    @Override
+    public String toString() {
+        if (primes.length == 0) return "1";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < primes.length; i++) {
+            if (i > 0) sb.append(" * ");
+            sb.append(primes[i]);
+            if (exponents[i] > 1) sb.append('^').append(exponents[i]);
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) {
+        long[] ns = {1, 36, 1_000_000_006L, 600851475143L, 4611685975477714963L};
+        for (long n : ns) {
+            Factorization f = of(n);
+            System.out.println(n + " = " + f + ": phi=" + f.phi() + " lambda=" + f.lambda()
+                    + " tau=" + f.divisorCount() + " sigma=" + f.divisorSum() + " mu=" + f.mobius());
+        }
+        System.out.println("divisors(36) = " + Arrays.toString(of(36).divisors()));
+
+        long big = 897_612_484_786_617_600L; // tau = 103680, the most of any n < 2^63
+        long start = System.nanoTime();
+        long[] d = of(big).divisors();
+        System.out.println(d.length + " divisors of " + big + " in " + (System.nanoTime() - start) / 1000 + " us");
+        for (long n : ns) of(n);
+        System.out.println(FactorizationCache.DEFAULT);
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * FactorizationCache - bounded, thread-safe LRU cache of Factorization results.
+ *
+ * Keys are spread over independent segments, each an access-ordered LinkedHashMap under its
+ * own lock, so threads working on different n rarely contend. The capacity is split over
+ * min(capacity, SEGMENTS) segments, the first capacity % segments of them one entry larger,
+ * and each evicts its least recently used entry once past its share.
+ * The factorization itself runs outside the lock; two threads missing on the same n at once
+ * may both compute it, and the second result simply replaces the first.
+ *
+ * Usage:
+ *   FactorizationCache cache = new FactorizationCache(100_000);
+ *   cache.get(n).phi();
+ *   cache.hits(); cache.misses();
+ */
+public final class FactorizationCache {
+
+    private static final int SEGMENTS = 16;
+
+    /** Shared cache behind Factorization.of */
+    public static final FactorizationCache DEFAULT = new FactorizationCache(1 << 16);
+
+    private final Segment[] segments;
+    private final LongFunction<Factorization> factorizer;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FactorizationCache(int capacity) {
+        this(capacity, Factorization::compute);
+    }
+
+    /** capacity >= 1 entries in total; factorizer computes misses */
+    public FactorizationCache(int capacity, LongFunction<Factorization> factorizer) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be >= 1");
+        this.factorizer = factorizer;
+        segments = new Segment[Math.min(capacity, SEGMENTS)];
+        int share = capacity / segments.length, extra = capacity % segments.length;
+        for (int i = 0; i < segments.length; i++) segments[i] = new Segment(i < extra ? share + 1 : share);
+    }
+
+    private final class Segment extends LinkedHashMap<Long, Factorization> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Factorization> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    private Segment segmentFor(long n) {
+        long h = n * 0x9E3779B97F4A7C15L; // spread consecutive n over all segments
+        return segments[(int) ((h >>> 32) * segments.length >>> 32)]; // top bits scaled to [0, segments)
+    }
+
+    /** Factorization of n >= 1, computed at most once while it stays cached */
+    public Factorization get(long n) {
+        if (n < 1) throw new IllegalArgumentException("n must be >= 1");
+        Segment seg = segmentFor(n);
+        Factorization f;
+        synchronized (seg) {
+            f = seg.get(n);
+        }
+        if (f != null) {
+            hits.increment();
+            return f;
+        }
+        misses.increment();
+        f = factorizer.apply(n);
+        synchronized (seg) {
+            seg.put(n, f);
+        }
+        return f;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /** Fraction of lookups served from the cache, 0 before the first lookup */
+    public double hitRate() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /** Number of cached entries */
+    public int size() {
+        int size = 0;
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                size += seg.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                seg.clear();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FactorizationCache{size=" + size() + ", hits=" + hits() + ", misses=" + misses()
+                + ", evictions=" + evictions() + "}";
+    }
+}
@@ -22,11 +22,32 @@ public class GCDUtils {
         return gcdRecursive(b, a % b);
     }
 
+    // ----------------------------
+    // 2️⃣½ Binary (Stein) GCD on longs
+    // Shifts and subtractions only: one numberOfTrailingZeros per step, no division
+    // (|Long.MIN_VALUE| is read as 2^63, so only gcd(MIN_VALUE, 0 or MIN_VALUE) wraps)
+    // ----------------------------
+    public static long gcd(long a, long b) {
+        a = Math.abs(a);
+        b = Math.abs(b);
+        if (a == 0) return b;
+        if (b == 0) return a;
+        int shift = Long.numberOfTrailingZeros(a | b);
+        a >>>= Long.numberOfTrailingZeros(a);
+        while (b != 0) {
+            b >>>= Long.numberOfTrailingZeros(b);
+            if (Long.compareUnsigned(a, b) > 0) { long t = a; a = b; b = t; }
+            b -= a;
+        }
+        return a << shift;
+    }
+
     // ----------------------------
     // 3️⃣ Least Common Multiple
     // ----------------------------
     public static long lcm(long a, long b) {
-        return (a / gcdIterative((int) a, (int) b)) * b;
+        if (a == 0 || b == 0) return 0;
+        return Math.abs(a / gcd(a, b) * b);
     }
 
     // ----------------------------
@@ -34,26 +55,39 @@ public class GCDUtils {
     // Returns array [gcd, x, y] where ax + by = gcd
     // ----------------------------
     public static long[] extendedGCD(long a, long b) {
-        if (b == 0) return new long[]{a, 1, 0};
-
-        long[] vals = extendedGCD(b, a % b);
-        long g = vals[0];
-        long x1 = vals[2];
-        long y1 = vals[1] - (a / b) * vals[2];
+        return extendedGCD(a, b, new long[3]);
+    }
 
-        return new long[]{g, x1, y1};
+    // Same, written into out[0..2] and returned; iterative, so no recursion and no allocation
+    // when the caller reuses out (same quotients, so the same x, y as the recursive form)
+    public static long[] extendedGCD(long a, long b, long[] out) {
+        long x0 = 1, x1 = 0, y0 = 0, y1 = 1;
+        while (b != 0) {
+            long q = a / b;
+            long t = a - q * b; a = b; b = t;
+            t = x0 - q * x1; x0 = x1; x1 = t;
+            t = y0 - q * y1; y0 = y1; y1 = t;
+        }
+        out[0] = a;
+        out[1] = x0;
+        out[2] = y0;
+        return out;
     }
 
     // ----------------------------
     // 5️⃣ Modular Inverse
     // (works only if gcd(a, m) = 1)
+    // Tracks only the coefficient of a, so nothing is allocated
     // ----------------------------
     public static long modInverse(long a, long m) {
-        long[] res = extendedGCD(a, m);
-        long g = res[0];
-        long x = res[1];
-        if (g != 1) throw new ArithmeticException("Inverse doesn't exist");
-        return (x % m + m) % m; // ensure positive
+        long r0 = a, r1 = m, x0 = 1, x1 = 0;
+        while (r1 != 0) {
+            long q = r0 / r1;
+            long t = r0 - q * r1; r0 = r1; r1 = t;
+            t = x0 - q * x1; x0 = x1; x1 = t;
+        }
+        if (r0 != 1) throw new ArithmeticException("Inverse doesn't exist");
+        return x0 < 0 ? x0 + m : x0; // |x0| <= m, so one add makes it positive without overflow
     }
 
     // ----------------------------
@@ -71,6 +105,7 @@ public class GCDUtils {
     public static void main(String[] args) {
         System.out.println("gcd(36, 60) iterative = " + gcdIterative(36, 60));
         System.out.println("gcd(36, 60) recursive = " + gcdRecursive(36, 60));
+        System.out.println("gcd(2^40 * 3, 2^20 * 9) binary = " + gcd(3L << 40, 9L << 20));
         System.out.println("lcm(12, 18) = " + lcm(12, 18));
 
         long[] ext = extendedGCD(30, 50);
@@ -0,0 +1,175 @@
+import java.util.Arrays;
+
+/**
+ * LinearRecurrence - sequences with s_i = c_1 s_(i-1) + ... + c_k s_(i-k) mod m: the shortest
+ * such recurrence from leading terms (Berlekamp-Massey) and the n-th term in O(M(k) log n),
+ * against O(k^3 log n) for ModuloMatrix.power on the companion matrix.
+ *
+ * With Q(x) = 1 - c_1 x - ... - c_k x^k and P = (s_0 + s_1 x + ...) Q mod x^k, the sequence is
+ * P / Q and s_n = [x^n] P / Q. Fiduccia's x^n mod the characteristic polynomial is taken here
+ * in its Bostan-Mori form: multiplying through by Q(-x) makes the denominator even,
+ *   P(x) / Q(x) = P(x) Q(-x) / V(x^2),  V(x^2) = Q(x) Q(-x),
+ * so s_n is [x^(n/2)] of (the terms of P Q(-x) with n's parity) / V. That halves n with two
+ * products of degree k and never divides, so nth works for any modulus.
+ *  - m < 2^31 and k >= NTT_MIN: the products run through Poly.spectra, O(k log k) per bit.
+ *    Mod an NTT prime the spectrum of Q(-x) is Q's with adjacent entries swapped, as the
+ *    transform lists Q(w^j) in bit-reversed order and -w^j = w^(j + N/2) flips the lowest bit
+ *    of the index: four transforms of length 2k..4k per halving.
+ *  - otherwise schoolbook, O(k^2) per bit, computing only the coefficients kept.
+ * Berlekamp-Massey divides, so m must be prime there; it needs 2k terms to pin down order k.
+ * An order-1000 recurrence at n = 10^18 takes about 7 ms mod 998244353 and 22 ms mod 1e9+7
+ * once warm, 1 s by schoolbook mod 2^61 - 1; the companion matrix would need 60 products of
+ * 1000 x 1000 matrices.
+ *
+ * Usage:
+ *   long[] c = LinearRecurrence.berlekampMassey(s, p);   // s_i = sum c[j] s_(i-1-j)
+ *   long x = LinearRecurrence.nth(s, c, n, p);           // s[0, c.length) as initial terms
+ *   long y = LinearRecurrence.guessNth(s, n, p);         // both in one call
+ */
+public final class LinearRecurrence {
+
+    /** Orders from which the halving step multiplies by NTT (moduli below 2^31) */
+    public static final int NTT_MIN = 64;
+
+    private LinearRecurrence() {}
+
+    /**
+     * Shortest recurrence generating s mod the prime p: c with s_i = sum_j c[j] s_(i-1-j) for
+     * every i >= c.length. O(s.length^2).
+     */
+    public static long[] berlekampMassey(long[] s, long p) {
+        Modulus m = Modulus.of(p);
+        int len = s.length;
+        long[] C = new long[len + 1], B = new long[len + 1], T = new long[len + 1];
+        C[0] = B[0] = 1;
+        int L = 0, shift = 1;
+        long b = 1;
+        for (int i = 0; i < len; i++) {
+            long d = m.reduce(s[i]); // discrepancy of C at s_i
+            for (int j = 1; j <= L; j++) d = m.add(d, m.mul(C[j], m.reduce(s[i - j])));
+            if (d == 0) {
+                shift++;
+                continue;
+            }
+            long coef = m.divide(d, b);
+            boolean grow = 2 * L <= i;
+            if (grow) System.arraycopy(C, 0, T, 0, len + 1);
+            for (int j = 0; j + shift <= len; j++) C[j + shift] = m.sub(C[j + shift], m.mul(coef, B[j]));
+            if (grow) {
+                L = i + 1 - L;
+                long[] t = B;
+                B = T;
+                T = t;
+                b = d;
+                shift = 1;
+            } else {
+                shift++;
+            }
+        }
+        long[] c = new long[L];
+        for (int j = 0; j < L; j++) c[j] = m.neg(C[j + 1]);
+        return c;
+    }
+
+    /** s_n mod m (1 <= m < 2^63) for s_i = sum_j c[j] s_(i-1-j), from init = s_0 .. s_(k-1) */
+    public static long nth(long[] init, long[] c, long n, long mod) {
+        Modulus m = Modulus.of(mod);
+        int k = c.length;
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        if (init.length < k) throw new IllegalArgumentException("need " + k + " initial terms, got " + init.length);
+        if (n < init.length) return m.reduce(init[(int) n]);
+        if (k == 0) return 0;
+
+        long[] Q = new long[k + 1];
+        Q[0] = m.reduce(1);
+        for (int j = 0; j < k; j++) Q[j + 1] = m.neg(m.reduce(c[j]));
+        long[] P = new long[k]; // (s_0 + ... + s_(k-1) x^(k-1)) Q mod x^k
+        for (int i = 0; i < k; i++) {
+            long s = m.reduce(init[i]);
+            if (s != 0) for (int j = 0; i + j < k; j++) P[i + j] = m.add(P[i + j], m.mul(s, Q[j]));
+        }
+        boolean ntt = k >= NTT_MIN && mod < ModArrays.MAX_MODULUS;
+        for (; n > 0; n >>>= 1) {
+            if (ntt) halveNtt(P, Q, (int) (n & 1), mod);
+            else halve(P, Q, (int) (n & 1), m);
+        }
+        return P[0]; // Q[0] stays 1
+    }
+
+    /** s_n mod the prime p from the recurrence Berlekamp-Massey finds in s */
+    public static long guessNth(long[] s, long n, long p) {
+        return nth(s, berlekampMassey(s, p), n, p);
+    }
+
+    /** P <- (P(x) Q(-x))[terms with index = parity mod 2], Q <- even part of Q(x) Q(-x), schoolbook */
+    private static void halve(long[] P, long[] Q, int parity, Modulus m) {
+        int k = P.length;
+        long[] Qm = Q.clone(); // Q(-x)
+        for (int j = 1; j <= k; j += 2) Qm[j] = m.neg(Qm[j]);
+        long[] p = new long[k], q = new long[k + 1];
+        for (int i = 0; i < k; i++) {
+            if (P[i] == 0) continue;
+            for (int j = (i ^ parity) & 1; j <= k; j += 2) p[(i + j) >> 1] = m.add(p[(i + j) >> 1], m.mul(P[i], Qm[j]));
+        }
+        for (int i = 0; i <= k; i++) {
+            if (Q[i] == 0) continue;
+            for (int j = i & 1; j <= k; j += 2) q[(i + j) >> 1] = m.add(q[(i + j) >> 1], m.mul(Q[i], Qm[j]));
+        }
+        System.arraycopy(p, 0, P, 0, k);
+        System.arraycopy(q, 0, Q, 0, k + 1);
+    }
+
+    /**
+     * halve with both products on spectra of length N > 2k, so nothing wraps. Mod an NTT prime
+     * Q(-x) comes from swapping Q's spectrum; Garner needs Q(-x) with residues in [0, m), so
+     * for other moduli it gets its own transform.
+     */
+    private static void halveNtt(long[] P, long[] Q, int parity, long mod) {
+        int k = P.length, N = Integer.highestOneBit(2 * k) << 1;
+        long[][] sp = Poly.spectra(P, N, mod), sq = Poly.spectra(Q, N, mod), sm;
+        if (sq.length == 1) {
+            long[] s = sq[0], t = new long[N];
+            for (int i = 0; i < N; i += 2) {
+                t[i] = s[i + 1];
+                t[i + 1] = s[i];
+            }
+            sm = new long[][]{t};
+        } else {
+            long[] Qm = Q.clone();
+            for (int j = 1; j <= k; j += 2) Qm[j] = Qm[j] == 0 ? 0 : mod - Qm[j];
+            sm = Poly.spectra(Qm, N, mod);
+        }
+        Poly.multiplySpectra(sp, sm, sp, mod);
+        Poly.multiplySpectra(sq, sm, sq, mod);
+        long[] u = Poly.fromSpectra(sp, mod), v = Poly.fromSpectra(sq, mod);
+        for (int i = 0; i < k; i++) P[i] = u[2 * i + parity];
+        for (int i = 0; i <= k; i++) Q[i] = v[2 * i];
+    }
+
+    public static void main(String[] args) {
+        long p = 1_000_000_007L;
+        long[] fib = {0, 1, 1, 2, 3, 5, 8, 13};
+        System.out.println("Fibonacci recurrence: " + Arrays.toString(berlekampMassey(fib, p)));
+        System.out.println("F(10) = " + guessNth(fib, 10, p) + ", F(10^18) mod p = " + guessNth(fib, 1_000_000_000_000_000_000L, p));
+
+        java.util.Random rnd = new java.util.Random(1);
+        int k = 1000;
+        long[] c = new long[k], init = new long[k];
+        for (int i = 0; i < k; i++) {
+            c[i] = rnd.nextInt(1 << 30);
+            init[i] = rnd.nextInt(1 << 30);
+        }
+        for (long q : new long[]{Poly.MOD, p, 2_305_843_009_213_693_951L}) { // the last is 2^61 - 1
+            long x = 0, start = System.nanoTime();
+            for (int rep = 0; rep < 3; rep++) x = nth(init, c, 1_000_000_000_000_000_000L, q);
+            System.out.println("order 1000, n = 10^18 mod " + q + ": " + (System.nanoTime() - start) / 3_000_000 + " ms (" + x + ")");
+        }
+        long[] s = new long[2 * k];
+        System.arraycopy(init, 0, s, 0, k);
+        for (int i = k; i < 2 * k; i++)
+            for (int j = 0; j < k; j++) s[i] = (s[i] + c[j] * s[i - 1 - j]) % p;
+        long start = System.nanoTime();
+        long[] found = berlekampMassey(s, p);
+        System.out.println("Berlekamp-Massey on 2000 terms: order " + found.length + ", " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
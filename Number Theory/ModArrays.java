@@ -0,0 +1,507 @@
+import jdk.incubator.vector.*;
+
+/**
+ * ModArrays - element-wise modular kernels on long[] and int[] arrays for moduli 2 <= p < 2^31,
+ * vectorized with the JDK Vector API (jdk.incubator.vector).
+ *
+ * Every element must already be a residue in [0, p). Each lane holds one residue in 64 bits:
+ *  - add / sub: one lanewise add or subtract and one masked correction,
+ *  - mul (odd p): a b < 2^62 is exact in a long lane and two Montgomery reductions with
+ *    R = 2^32, the second against 2^64 mod p, bring it back to a plain residue; only lane
+ *    multiplies, masks and shifts, since the Vector API has no lanewise division,
+ *  - scale / axpy by a constant c: Shoup's trick, c' = floor(c 2^32 / p) and
+ *    q = (a c') >>> 32, which stays inside a long because a, c' < 2^32 and a < 2^31.
+ * factorials() and inverseFactorials() run one running product per lane, each over its own
+ * chunk of the range, so the serial chain of multiplications becomes `lanes` independent ones;
+ * a scale pass then multiplies every chunk by the product of the chunks before it.
+ *
+ * Compile and run with --add-modules jdk.incubator.vector. When the module is missing, or with
+ * -Dmodarrays.scalar=true, every kernel runs its scalar loop (Barrett through Modulus) instead.
+ *
+ * Usage:
+ *   ModArrays.mul(a, b, out, 998_244_353L);  // out[i] = a[i] * b[i] mod p
+ *   ModArrays.axpy(c, x, y, p);              // y[i] = (y[i] + c * x[i]) mod p
+ *   long s = ModArrays.dot(a, b, p);
+ *   long[] fact = ModArrays.factorials(1_000_000, p), inv = ModArrays.inverseFactorials(fact, p);
+ */
+public final class ModArrays {
+
+    /** Largest modulus the kernels accept (exclusive) */
+    public static final long MAX_MODULUS = 1L << 31;
+
+    // below this many elements factorials() is not worth splitting into chunks
+    private static final int CHUNKED_MIN = 1 << 10;
+
+    /** True when the kernels run on the Vector API rather than the scalar loops */
+    public static final boolean VECTORIZED = probe();
+
+    private ModArrays() {}
+
+    private static boolean probe() {
+        if (Boolean.getBoolean("modarrays.scalar")) return false;
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return false;
+        try {
+            return Simd.lanes() >= 2;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    private static Modulus modulus(long p) {
+        if (p < 2 || p >= MAX_MODULUS) throw new IllegalArgumentException("modulus must be in [2, 2^31)");
+        return Modulus.of(p);
+    }
+
+    private static void checkLengths(int n, int... lengths) {
+        for (int len : lengths) if (len < n) throw new IllegalArgumentException("array shorter than the first operand");
+    }
+
+    // ---------- long[] ----------
+
+    /** out[i] = (a[i] + b[i]) mod p */
+    public static void add(long[] a, long[] b, long[] out, long p) {
+        Modulus M = modulus(p);
+        checkLengths(a.length, b.length, out.length);
+        int i = VECTORIZED ? Simd.add(a, b, out, p) : 0;
+        for (; i < a.length; i++) out[i] = M.add(a[i], b[i]);
+    }
+
+    /** out[i] = (a[i] - b[i]) mod p */
+    public static void sub(long[] a, long[] b, long[] out, long p) {
+        Modulus M = modulus(p);
+        checkLengths(a.length, b.length, out.length);
+        int i = VECTORIZED ? Simd.sub(a, b, out, p) : 0;
+        for (; i < a.length; i++) out[i] = M.sub(a[i], b[i]);
+    }
+
+    /** out[i] = a[i] * b[i] mod p */
+    public static void mul(long[] a, long[] b, long[] out, long p) {
+        Modulus M = modulus(p);
+        checkLengths(a.length, b.length, out.length);
+        int i = VECTORIZED ? Simd.mul(a, b, out, p) : 0;
+        for (; i < a.length; i++) out[i] = M.mul(a[i], b[i]);
+    }
+
+    /** out[i] = c * a[i] mod p, for c in [0, p) */
+    public static void scale(long[] a, long c, long[] out, long p) {
+        scale(a, 0, a.length, c, out, p);
+    }
+
+    /** out[i] = c * a[i] mod p for from <= i < to */
+    public static void scale(long[] a, int from, int to, long c, long[] out, long p) {
+        Modulus M = modulus(p);
+        checkLengths(to, a.length, out.length);
+        int i = VECTORIZED ? Simd.scale(a, from, to, c, out, p) : from;
+        for (; i < to; i++) out[i] = M.mul(a[i], c);
+    }
+
+    /** out[i] = (a[i] * b[i] + c[i]) mod p */
+    public static void fma(long[] a, long[] b, long[] c, long[] out, long p) {
+        Modulus M = modulus(p);
+        checkLengths(a.length, b.length, c.length, out.length);
+        int i = VECTORIZED ? Simd.fma(a, b, c, out, p) : 0;
+        for (; i < a.length; i++) out[i] = M.add(M.mul(a[i], b[i]), c[i]);
+    }
+
+    /** y[i] = (y[i] + c * x[i]) mod p, for c in [0, p); the row update of matrix products */
+    public static void axpy(long c, long[] x, long[] y, long p) {
+        Modulus M = modulus(p);
+        checkLengths(x.length, y.length);
+        int i = VECTORIZED ? Simd.axpy(c, x, y, p) : 0;
+        for (; i < x.length; i++) y[i] = M.add(y[i], M.mul(x[i], c));
+    }
+
+    /** sum of a[i] * b[i] mod p */
+    public static long dot(long[] a, long[] b, long p) {
+        Modulus M = modulus(p);
+        checkLengths(a.length, b.length);
+        long[] acc = {0};
+        int i = VECTORIZED ? Simd.dot(a, b, p, acc) : 0;
+        long s = acc[0];
+        for (; i < a.length; i++) s = M.add(s, M.mul(a[i], b[i]));
+        return s;
+    }
+
+    // ---------- int[] ----------
+
+    public static void add(int[] a, int[] b, int[] out, long p) {
+        Modulus M = modulus(p);
+        checkLengths(a.length, b.length, out.length);
+        int i = VECTORIZED ? Simd.add(a, b, out, p) : 0;
+        for (; i < a.length; i++) out[i] = (int) M.add(a[i], b[i]);
+    }
+
+    public static void sub(int[] a, int[] b, int[] out, long p) {
+        Modulus M = modulus(p);
+        checkLengths(a.length, b.length, out.length);
+        int i = VECTORIZED ? Simd.sub(a, b, out, p) : 0;
+        for (; i < a.length; i++) out[i] = (int) M.sub(a[i], b[i]);
+    }
+
+    public static void mul(int[] a, int[] b, int[] out, long p) {
+        Modulus M = modulus(p);
+        checkLengths(a.length, b.length, out.length);
+        int i = VECTORIZED ? Simd.mul(a, b, out, p) : 0;
+        for (; i < a.length; i++) out[i] = (int) M.mul(a[i], b[i]);
+    }
+
+    public static void scale(int[] a, long c, int[] out, long p) {
+        Modulus M = modulus(p);
+        checkLengths(a.length, out.length);
+        int i = VECTORIZED ? Simd.scale(a, c, out, p) : 0;
+        for (; i < a.length; i++) out[i] = (int) M.mul(a[i], c);
+    }
+
+    public static void fma(int[] a, int[] b, int[] c, int[] out, long p) {
+        Modulus M = modulus(p);
+        checkLengths(a.length, b.length, c.length, out.length);
+        int i = VECTORIZED ? Simd.fma(a, b, c, out, p) : 0;
+        for (; i < a.length; i++) out[i] = (int) M.add(M.mul(a[i], b[i]), c[i]);
+    }
+
+    public static void axpy(long c, int[] x, int[] y, long p) {
+        Modulus M = modulus(p);
+        checkLengths(x.length, y.length);
+        int i = VECTORIZED ? Simd.axpy(c, x, y, p) : 0;
+        for (; i < x.length; i++) y[i] = (int) M.add(y[i], M.mul(x[i], c));
+    }
+
+    public static long dot(int[] a, int[] b, long p) {
+        Modulus M = modulus(p);
+        checkLengths(a.length, b.length);
+        long[] acc = {0};
+        int i = VECTORIZED ? Simd.dot(a, b, p, acc) : 0;
+        long s = acc[0];
+        for (; i < a.length; i++) s = M.add(s, M.mul(a[i], b[i]));
+        return s;
+    }
+
+    // ---------- factorial tables ----------
+
+    /** fact[i] = i! mod p for 0 <= i <= n */
+    public static long[] factorials(int n, long p) {
+        Modulus M = modulus(p);
+        long[] fact = new long[n + 1];
+        fact[0] = 1;
+        int chunks = VECTORIZED ? Simd.chunks() : 1;
+        if (chunks == 1 || n < CHUNKED_MIN || (p & 1) == 0) {
+            for (int i = 1; i <= n; i++) fact[i] = M.mul(fact[i - 1], M.reduce(i));
+            return fact;
+        }
+        // chunk j holds the running product of j C + 1 .. i, computed by lane j
+        int chunk = (n + chunks - 1) / chunks;
+        Simd.chunkedProducts(fact, n, chunk, p, false);
+        long carry = 1;
+        for (int start = 1; start <= n; start += chunk) {
+            int end = Math.min(n + 1, start + chunk);
+            if (start > 1) scale(fact, start, end, carry, fact, p);
+            carry = fact[end - 1];
+        }
+        return fact;
+    }
+
+    /**
+     * invFact[i] = (i!)^-1 mod p from fact = factorials(n, p), p prime; all zero if p <= n.
+     * invFact[i] = (n!)^-1 (i + 1) ... n, the suffix products built chunk by chunk as in factorials.
+     */
+    public static long[] inverseFactorials(long[] fact, long p) {
+        Modulus M = modulus(p);
+        int n = fact.length - 1;
+        long[] inv = new long[n + 1];
+        long invN = fact[n] == 0 ? 0 : M.pow(fact[n], p - 2); // Fermat
+        int chunks = VECTORIZED ? Simd.chunks() : 1;
+        if (chunks == 1 || n < CHUNKED_MIN || (p & 1) == 0) {
+            inv[n] = invN;
+            for (int i = n - 1; i >= 0; i--) inv[i] = M.mul(inv[i + 1], M.reduce(i + 1));
+            return inv;
+        }
+        // chunk j, counted down from n - 1, holds the running product of i + 1 .. n - j C
+        int chunk = (n + chunks - 1) / chunks;
+        Simd.chunkedProducts(inv, n, chunk, p, true);
+        inv[n] = 1;
+        long carry = 1;
+        for (int hi = n; hi > 0; ) {
+            int lo = Math.max(0, hi - chunk);
+            if (hi < n) scale(inv, lo, hi, carry, inv, p);
+            carry = inv[lo];
+            hi = lo;
+        }
+        scale(inv, M.reduce(invN), inv, p);
+        return inv;
+    }
+
+    /** The Vector API kernels; loaded only once probe() has found the module */
+    private static final class Simd {
+        private static final VectorSpecies<Long> L = LongVector.SPECIES_PREFERRED;
+        // same lane count as L, for int[] loads and stores
+        private static final VectorSpecies<Integer> I =
+                VectorSpecies.of(int.class, VectorShape.forBitSize(L.vectorBitSize() / 2));
+
+        private static final long MASK32 = 0xFFFFFFFFL;
+        // steps of chunkedProducts transposed into place at a time
+        private static final int BLOCK = 256;
+
+        static int lanes() {
+            return L.length();
+        }
+
+        private static LongVector addMod(LongVector a, LongVector b, long p) {
+            LongVector s = a.add(b).sub(p);
+            return s.add(p, s.lt(0));
+        }
+
+        private static LongVector subMod(LongVector a, LongVector b, long p) {
+            LongVector d = a.sub(b);
+            return d.add(p, d.lt(0));
+        }
+
+        /** t * 2^-32 mod p, in [0, 2p), for t < p 2^32 and nInv = -p^-1 mod 2^32 */
+        private static LongVector redc(LongVector t, long p, long nInv) {
+            LongVector m = t.and(MASK32).mul(nInv).and(MASK32);
+            return t.add(m.mul(p)).lanewise(VectorOperators.LSHR, 32); // t + m p < 2^64, low word cancels
+        }
+
+        /** a * b mod p for odd p: two Montgomery reductions, the second against r2 = 2^64 mod p */
+        private static LongVector mulMod(LongVector a, LongVector b, long p, long nInv, long r2) {
+            LongVector r = redc(redc(a.mul(b), p, nInv).mul(r2), p, nInv);
+            return r.sub(p, r.compare(VectorOperators.GE, p));
+        }
+
+        /** c * a mod p with shoup = floor(c 2^32 / p) */
+        private static LongVector scaleMod(LongVector a, long c, long shoup, long p) {
+            LongVector q = a.mul(shoup).lanewise(VectorOperators.LSHR, 32);
+            LongVector r = a.mul(c).sub(q.mul(p)); // in [0, 2p)
+            return r.sub(p, r.compare(VectorOperators.GE, p));
+        }
+
+        private static long shoup(long c, long p) {
+            return (c << 32) / p;
+        }
+
+        private static long negInverse(long p) {
+            long x = p; // Newton: each step doubles the correct low bits
+            for (int i = 0; i < 5; i++) x *= 2 - p * x;
+            return -x & MASK32;
+        }
+
+        private static long r2(long p) {
+            long r = (1L << 32) % p;
+            return r * r % p;
+        }
+
+        private static LongVector load(int[] a, int i) {
+            return (LongVector) IntVector.fromArray(I, a, i).convertShape(VectorOperators.I2L, L, 0);
+        }
+
+        private static void store(LongVector v, int[] out, int i) {
+            ((IntVector) v.convertShape(VectorOperators.L2I, I, 0)).intoArray(out, i);
+        }
+
+        // each kernel returns the index where the scalar tail takes over
+
+        static int add(long[] a, long[] b, long[] out, long p) {
+            int i = 0, bound = L.loopBound(a.length);
+            for (; i < bound; i += L.length())
+                addMod(LongVector.fromArray(L, a, i), LongVector.fromArray(L, b, i), p).intoArray(out, i);
+            return i;
+        }
+
+        static int sub(long[] a, long[] b, long[] out, long p) {
+            int i = 0, bound = L.loopBound(a.length);
+            for (; i < bound; i += L.length())
+                subMod(LongVector.fromArray(L, a, i), LongVector.fromArray(L, b, i), p).intoArray(out, i);
+            return i;
+        }
+
+        static int mul(long[] a, long[] b, long[] out, long p) {
+            if ((p & 1) == 0) return 0; // Montgomery needs odd p; the scalar loop takes it
+            long nInv = negInverse(p), r2 = r2(p);
+            int i = 0, bound = L.loopBound(a.length);
+            for (; i < bound; i += L.length())
+                mulMod(LongVector.fromArray(L, a, i), LongVector.fromArray(L, b, i), p, nInv, r2).intoArray(out, i);
+            return i;
+        }
+
+        static int scale(long[] a, int from, int to, long c, long[] out, long p) {
+            long shoup = shoup(c, p);
+            int i = from, bound = from + L.loopBound(to - from);
+            for (; i < bound; i += L.length())
+                scaleMod(LongVector.fromArray(L, a, i), c, shoup, p).intoArray(out, i);
+            return i;
+        }
+
+        static int fma(long[] a, long[] b, long[] c, long[] out, long p) {
+            if ((p & 1) == 0) return 0; // Montgomery needs odd p; the scalar loop takes it
+            long nInv = negInverse(p), r2 = r2(p);
+            int i = 0, bound = L.loopBound(a.length);
+            for (; i < bound; i += L.length()) {
+                LongVector ab = mulMod(LongVector.fromArray(L, a, i), LongVector.fromArray(L, b, i), p, nInv, r2);
+                addMod(ab, LongVector.fromArray(L, c, i), p).intoArray(out, i);
+            }
+            return i;
+        }
+
+        static int axpy(long c, long[] x, long[] y, long p) {
+            long shoup = shoup(c, p);
+            int i = 0, bound = L.loopBound(x.length);
+            for (; i < bound; i += L.length())
+                addMod(LongVector.fromArray(L, y, i), scaleMod(LongVector.fromArray(L, x, i), c, shoup, p), p)
+                        .intoArray(y, i);
+            return i;
+        }
+
+        static int dot(long[] a, long[] b, long p, long[] sum) {
+            if ((p & 1) == 0) return 0; // Montgomery needs odd p; the scalar loop takes it
+            long nInv = negInverse(p), r2 = r2(p);
+            LongVector acc = LongVector.zero(L);
+            int i = 0, bound = L.loopBound(a.length);
+            for (; i < bound; i += L.length())
+                acc = addMod(acc, mulMod(LongVector.fromArray(L, a, i), LongVector.fromArray(L, b, i), p, nInv, r2), p);
+            sum[0] = acc.reduceLanes(VectorOperators.ADD) % p; // lanes < 2^31 each
+            return i;
+        }
+
+        static int add(int[] a, int[] b, int[] out, long p) {
+            int i = 0, bound = I.loopBound(a.length);
+            for (; i < bound; i += I.length()) store(addMod(load(a, i), load(b, i), p), out, i);
+            return i;
+        }
+
+        static int sub(int[] a, int[] b, int[] out, long p) {
+            int i = 0, bound = I.loopBound(a.length);
+            for (; i < bound; i += I.length()) store(subMod(load(a, i), load(b, i), p), out, i);
+            return i;
+        }
+
+        static int mul(int[] a, int[] b, int[] out, long p) {
+            if ((p & 1) == 0) return 0; // Montgomery needs odd p; the scalar loop takes it
+            long nInv = negInverse(p), r2 = r2(p);
+            int i = 0, bound = I.loopBound(a.length);
+            for (; i < bound; i += I.length()) store(mulMod(load(a, i), load(b, i), p, nInv, r2), out, i);
+            return i;
+        }
+
+        static int scale(int[] a, long c, int[] out, long p) {
+            long shoup = shoup(c, p);
+            int i = 0, bound = I.loopBound(a.length);
+            for (; i < bound; i += I.length()) store(scaleMod(load(a, i), c, shoup, p), out, i);
+            return i;
+        }
+
+        static int fma(int[] a, int[] b, int[] c, int[] out, long p) {
+            if ((p & 1) == 0) return 0; // Montgomery needs odd p; the scalar loop takes it
+            long nInv = negInverse(p), r2 = r2(p);
+            int i = 0, bound = I.loopBound(a.length);
+            for (; i < bound; i += I.length())
+                store(addMod(mulMod(load(a, i), load(b, i), p, nInv, r2), load(c, i), p), out, i);
+            return i;
+        }
+
+        static int axpy(long c, int[] x, int[] y, long p) {
+            long shoup = shoup(c, p);
+            int i = 0, bound = I.loopBound(x.length);
+            for (; i < bound; i += I.length())
+                store(addMod(load(y, i), scaleMod(load(x, i), c, shoup, p), p), y, i);
+            return i;
+        }
+
+        static int dot(int[] a, int[] b, long p, long[] sum) {
+            if ((p & 1) == 0) return 0; // Montgomery needs odd p; the scalar loop takes it
+            long nInv = negInverse(p), r2 = r2(p);
+            LongVector acc = LongVector.zero(L);
+            int i = 0, bound = I.loopBound(a.length);
+            for (; i < bound; i += I.length()) acc = addMod(acc, mulMod(load(a, i), load(b, i), p, nInv, r2), p);
+            sum[0] = acc.reduceLanes(VectorOperators.ADD) % p;
+            return i;
+        }
+
+        /**
+         * For odd p. Chunk j of the index range gets its own running product:
+         * prefix: out[i] = (1 + j chunk) ... i        for i = 1 + j chunk + t <= n,
+         * suffix: out[i] = (i + 1) ... (n - j chunk)  for i = n - 1 - j chunk - t >= 0.
+         * Two vectors of chains run side by side to hide the multiply latency; each step's
+         * products are stored contiguously and transposed into out one block at a time.
+         */
+        static void chunkedProducts(long[] out, int n, int chunk, long p, boolean suffix) {
+            long nInv = negInverse(p), r2 = r2(p);
+            int chunks = chunks();
+            long[] run = new long[chunks], k = new long[chunks]; // per chunk: running product, next factor
+            for (int j = 0; j < chunks; j++) {
+                run[j] = 1;
+                k[j] = suffix ? n - (long) j * chunk : 1 + (long) j * chunk;
+            }
+            long[] block = new long[BLOCK * chunks];
+            for (int t0 = 0; t0 < chunk; t0 += BLOCK) {
+                int steps = Math.min(BLOCK, chunk - t0);
+                productBlock(run, k, block, steps, suffix ? -1 : 1, p, nInv, r2);
+                for (int j = 0; j < chunks; j++) {
+                    long first = (long) j * chunk + t0; // offset of step t0 within the range
+                    for (int t = 0; t < steps && first + t < n; t++) {
+                        int idx = (int) (suffix ? n - 1 - first - t : 1 + first + t);
+                        out[idx] = block[t * chunks + j];
+                    }
+                }
+            }
+        }
+
+        /**
+         * `steps` multiplications of every chain; step t leaves its products in block[t chunks ..].
+         * A method of its own so C2 compiles it whole (no vector state crosses an OSR entry)
+         * and the two chains stay in registers. Lanes past the end of the range multiply
+         * garbage, but are never copied out.
+         */
+        private static void productBlock(long[] run, long[] k, long[] block, int steps, long step,
+                                         long p, long nInv, long r2) {
+            int lanes = L.length(), chunks = 2 * lanes;
+            LongVector run0 = LongVector.fromArray(L, run, 0), run1 = LongVector.fromArray(L, run, lanes);
+            LongVector k0 = LongVector.fromArray(L, k, 0), k1 = LongVector.fromArray(L, k, lanes);
+            for (int t = 0; t < steps; t++) {
+                run0 = mulMod(run0, k0, p, nInv, r2);
+                run1 = mulMod(run1, k1, p, nInv, r2);
+                run0.intoArray(block, t * chunks);
+                run1.intoArray(block, t * chunks + lanes);
+                k0 = k0.add(step);
+                k1 = k1.add(step);
+            }
+            run0.intoArray(run, 0);
+            run1.intoArray(run, lanes);
+            k0.intoArray(k, 0);
+            k1.intoArray(k, lanes);
+        }
+
+        static int chunks() {
+            return 2 * L.length();
+        }
+    }
+
+    public static void main(String[] args) {
+        long p = 998_244_353L;
+        int n = 1 << 22;
+        long[] a = new long[n], b = new long[n], out = new long[n];
+        java.util.Random rnd = new java.util.Random(1);
+        for (int i = 0; i < n; i++) {
+            a[i] = Math.floorMod(rnd.nextLong(), p);
+            b[i] = Math.floorMod(rnd.nextLong(), p);
+        }
+        System.out.println("vectorized: " + VECTORIZED);
+        Modulus M = Modulus.of(p);
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            mul(a, b, out, p);
+            long kernel = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) out[i] = ModularArithmetic.multiply(a[i], b[i], p);
+            long scalar = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) out[i] = M.mul(a[i], b[i]);
+            long barrett = System.nanoTime() - start;
+            System.out.println("mul 4M: ModArrays " + kernel / 1000 + " us, ModularArithmetic " + scalar / 1000
+                    + " us, Modulus " + barrett / 1000 + " us");
+        }
+        System.out.println("dot = " + dot(a, b, p));
+        long start = System.nanoTime();
+        long[] fact = factorials(10_000_000, p), inv = inverseFactorials(fact, p);
+        System.out.println("10^7! mod p = " + fact[10_000_000] + ", tables in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms, 10! * 10!^-1 = " + M.mul(fact[10], inv[10]));
+    }
+}
@@ -1,7 +1,27 @@
 package mathlib;
 
+import java.util.stream.IntStream;
+
+/**
+ * ModularArithmetic - one-off modular operations for any modulus 1 <= mod < 2^63.
+ *
+ * Each call takes the modulus as a long, and the product of two residues does not fit
+ * in a long past 2^31.5, so such moduli take the 128-bit path. Code that reuses one
+ * modulus should pass a Modulus, which precomputes Barrett constants and never divides.
+ *
+ * Usage:
+ *   ModularArithmetic.power(a, e, 998_244_353L);
+ *   Modulus M = Modulus.of(1_000_000_007L);
+ *   ModularArithmetic.multiply(a, b, M);
+ *   long[] inv = ModularArithmetic.inverseAll(values, M); // one extended Euclid for the lot
+ */
 public class ModularArithmetic {
 
+    // below this bound (floor(sqrt(2^63))) the product of two residues fits in a long
+    private static final long DIRECT_MUL_LIMIT = 3_037_000_499L;
+    // inverseAll(..., parallel) hands out work in chunks of this many values
+    private static final int INVERSE_CHUNK = 1 << 14;
+
     // Prevent instantiation
     private ModularArithmetic() {}
 
@@ -9,10 +29,10 @@ public class ModularArithmetic {
      * Performs modular addition (a + b) % mod safely
      */
     public static long add(long a, long b, long mod) {
-        a %= mod;
-        b %= mod;
-        long res = a + b;
-        if (res >= mod) res -= mod;
+        a = Math.floorMod(a, mod);
+        b = Math.floorMod(b, mod);
+        long res = a - mod + b; // a + b itself may overflow
+        if (res < 0) res += mod;
         return res;
     }
 
@@ -20,8 +40,8 @@ public class ModularArithmetic {
      * Performs modular subtraction (a - b) % mod safely
      */
     public static long subtract(long a, long b, long mod) {
-        a %= mod;
-        b %= mod;
+        a = Math.floorMod(a, mod);
+        b = Math.floorMod(b, mod);
         long res = a - b;
         if (res < 0) res += mod;
         return res;
@@ -31,11 +51,10 @@ public class ModularArithmetic {
      * Performs modular multiplication (a * b) % mod safely
      */
     public static long multiply(long a, long b, long mod) {
-        a %= mod;
-        b %= mod;
-        long res = (a * b) % mod;
-        if (res < 0) res += mod;
-        return res;
+        a = Math.floorMod(a, mod);
+        b = Math.floorMod(b, mod);
+        if (mod <= DIRECT_MUL_LIMIT) return (a * b) % mod;
+        return Montgomery.mulMod(a, b, mod);
     }
 
     /**
@@ -43,8 +62,8 @@ public class ModularArithmetic {
      * Time: O(log b)
      */
     public static long power(long a, long b, long mod) {
-        a %= mod;
-        long res = 1;
+        a = Math.floorMod(a, mod);
+        long res = 1 % mod;
         while (b > 0) {
             if ((b & 1) == 1)
                 res = multiply(res, a, mod);
@@ -72,4 +91,83 @@ public class ModularArithmetic {
     public static long divide(long a, long b, long mod) {
         return multiply(a, modInverse(b, mod), mod);
     }
+
+    // ---------- precomputed modulus ----------
+
+    public static long add(long a, long b, Modulus mod) {
+        return mod.add(mod.reduce(a), mod.reduce(b));
+    }
+
+    public static long subtract(long a, long b, Modulus mod) {
+        return mod.sub(mod.reduce(a), mod.reduce(b));
+    }
+
+    public static long multiply(long a, long b, Modulus mod) {
+        return mod.mul(mod.reduce(a), mod.reduce(b));
+    }
+
+    public static long power(long a, long b, Modulus mod) {
+        return mod.pow(a, b);
+    }
+
+    /** Inverse by extended Euclid, so mod need not be prime */
+    public static long modInverse(long a, Modulus mod) {
+        return mod.inverse(a);
+    }
+
+    public static long divide(long a, long b, Modulus mod) {
+        return mod.divide(a, b);
+    }
+
+    // ---------- batch inversion ----------
+
+    /** out[i] = values[i]^-1 mod m for every i; see inverseAll(values, mod, parallel) */
+    public static long[] inverseAll(long[] values, Modulus mod) {
+        return inverseAll(values, mod, false);
+    }
+
+    /**
+     * Inverts every value by Montgomery's trick: prefix products, one extended-Euclid inverse of
+     * the total, then a backward pass, so n inverses cost one inversion and 3n multiplications.
+     * With parallel set, chunks of INVERSE_CHUNK values each do the same on the common pool.
+     * Every value must be a unit mod m; otherwise IllegalArgumentException names the first one that is not.
+     */
+    public static long[] inverseAll(long[] values, Modulus mod, boolean parallel) {
+        long[] out = new long[values.length];
+        int chunks = (values.length + INVERSE_CHUNK - 1) / INVERSE_CHUNK;
+        if (parallel && chunks > 1) {
+            IntStream.range(0, chunks).parallel().forEach(c ->
+                    inverseRange(values, out, c * INVERSE_CHUNK, Math.min(values.length, (c + 1) * INVERSE_CHUNK), mod));
+        } else {
+            inverseRange(values, out, 0, values.length, mod);
+        }
+        return out;
+    }
+
+    private static void inverseRange(long[] values, long[] out, int from, int to, Modulus mod) {
+        if (from == to) return;
+        long acc = mod.reduce(1);
+        for (int i = from; i < to; i++) {
+            out[i] = acc; // product of values[from .. i - 1]
+            acc = mod.mul(acc, mod.reduce(values[i]));
+        }
+        long inv; // (values[from] ... values[i])^-1 as i walks down
+        try {
+            inv = mod.inverse(acc);
+        } catch (IllegalArgumentException e) {
+            for (int i = from; i < to; i++) {
+                try {
+                    mod.inverse(values[i]);
+                } catch (IllegalArgumentException notUnit) {
+                    throw new IllegalArgumentException("Inverse doesn't exist for values[" + i + "] = " + values[i]);
+                }
+            }
+            throw e;
+        }
+        for (int i = to - 1; i >= from; i--) {
+            long v = mod.reduce(values[i]);
+            out[i] = mod.mul(out[i], inv);
+            inv = mod.mul(inv, v);
+        }
+    }
 }
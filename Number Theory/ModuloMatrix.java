@@ -10,49 +10,69 @@ import java.util.Arrays;
  *  - matrix exponentiation (A^n mod M)
  *  - identity matrix generation
  * 
+ *  Every operation is correct for any modulus below 2^63: the long-modulus overloads build a
+ *  Modulus once per call, so products are reduced by Barrett without division or overflow.
+ *  Pass a Modulus directly when the same one is used again and again.
+ *
  *  These operations are critical for:
- *  - Linear recurrences (Fibonacci, Tribonacci, etc.)
+ *  - Linear recurrences (Fibonacci, Tribonacci, etc.); past order ~10, LinearRecurrence.nth
+ *    gets the n-th term from the characteristic polynomial in O(k^2 log n) or less
  *  - Modular combinatorics
  *  - Cryptographic matrix systems
  */
 public class ModuloMatrix {
 
+    // from this many columns on, products below ModArrays.MAX_MODULUS run as row updates on ModArrays
+    private static final int ROW_KERNEL_MIN = 32;
+
     private ModuloMatrix() {}
 
     /** Adds two matrices mod M */
     public static long[][] add(long[][] A, long[][] B, long mod) {
+        return add(A, B, Modulus.of(mod));
+    }
+
+    public static long[][] add(long[][] A, long[][] B, Modulus mod) {
         int n = A.length, m = A[0].length;
         long[][] res = new long[n][m];
         for (int i = 0; i < n; i++)
             for (int j = 0; j < m; j++)
-                res[i][j] = (A[i][j] + B[i][j]) % mod;
+                res[i][j] = mod.add(mod.reduce(A[i][j]), mod.reduce(B[i][j]));
         return res;
     }
 
     /** Subtracts two matrices mod M */
     public static long[][] subtract(long[][] A, long[][] B, long mod) {
+        return subtract(A, B, Modulus.of(mod));
+    }
+
+    public static long[][] subtract(long[][] A, long[][] B, Modulus mod) {
         int n = A.length, m = A[0].length;
         long[][] res = new long[n][m];
         for (int i = 0; i < n; i++)
-            for (int j = 0; j < m; j++) {
-                res[i][j] = (A[i][j] - B[i][j]) % mod;
-                if (res[i][j] < 0) res[i][j] += mod;
-            }
+            for (int j = 0; j < m; j++)
+                res[i][j] = mod.sub(mod.reduce(A[i][j]), mod.reduce(B[i][j]));
         return res;
     }
 
     /** Multiplies two matrices mod M */
     public static long[][] multiply(long[][] A, long[][] B, long mod) {
+        return multiply(A, B, Modulus.of(mod));
+    }
+
+    public static long[][] multiply(long[][] A, long[][] B, Modulus mod) {
         int n = A.length, m = A[0].length, p = B[0].length;
         if (A[0].length != B.length)
             throw new IllegalArgumentException("Invalid matrix dimensions for multiplication");
 
+        if (p >= ROW_KERNEL_MIN && mod.m >= 2 && mod.m < ModArrays.MAX_MODULUS) return multiplyRows(A, B, mod);
+
         long[][] res = new long[n][p];
         for (int i = 0; i < n; i++) {
             for (int j = 0; j < p; j++) {
                 long sum = 0;
                 for (int k = 0; k < m; k++) {
-                    sum = (sum + A[i][k] * B[k][j]) % mod;
+                    sum = mod.add(sum, mod.mul(mod.reduce(A[i][k]), mod.reduce(B[k][j])));
                 }
                 res[i][j] = sum;
             }
@@ -60,6 +80,22 @@ public class ModuloMatrix {
         return res;
     }
 
+    /** res[i] = sum over k of A[i][k] * B[k], each term one ModArrays.axpy over a whole row */
+    private static long[][] multiplyRows(long[][] A, long[][] B, Modulus mod) {
+        int n = A.length, m = B.length, p = B[0].length;
+        long[][] rows = new long[m][p]; // B reduced once, so the kernels see residues
+        for (int k = 0; k < m; k++)
+            for (int j = 0; j < p; j++) rows[k][j] = mod.reduce(B[k][j]);
+        long[][] res = new long[n][p];
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < m; k++) {
+                long a = mod.reduce(A[i][k]);
+                if (a != 0) ModArrays.axpy(a, rows[k], res[i], mod.m);
+            }
+        }
+        return res;
+    }
+
     /** Generates an identity matrix of size n */
     public static long[][] identity(int n) {
         long[][] I = new long[n][n];
@@ -69,6 +105,10 @@ public class ModuloMatrix {
 
     /** Exponentiates matrix A^power mod M */
     public static long[][] power(long[][] A, long power, long mod) {
+        return power(A, power, Modulus.of(mod));
+    }
+
+    public static long[][] power(long[][] A, long power, Modulus mod) {
         int n = A.length;
         if (A.length != A[0].length)
             throw new IllegalArgumentException("Matrix must be square for exponentiation");
@@ -0,0 +1,175 @@
+import java.math.BigInteger;
+
+/**
+ * Modulus - an immutable modulus 1 <= m < 2^63 with its reduction constants computed once,
+ * so add / sub / mul / pow on residues in [0, m) never divide.
+ *
+ * Products are reduced by Barrett's method on the 128-bit product from
+ * Montgomery.unsignedMultiplyHigh:
+ *  - m <= 2^32: a * b < 2^64 and q = hi64(a b * floor(2^64 / m)) is at most one too small,
+ *  - m >  2^32: HAC 14.42 with k = bitlength(m) and mu = floor(4^k / m), at most two corrections,
+ *  - m = 2^j:   a mask.
+ * Unlike Montgomery form the residues stay plain, so a Modulus drops straight into code
+ * written against ModularArithmetic. Build one per modulus and reuse it.
+ *
+ * Usage:
+ *   Modulus M = Modulus.of(1_000_000_007L);
+ *   long x = M.mul(a, b), y = M.pow(x, e), z = M.inverse(y);
+ *   ModuloMatrix.power(F, n, M);
+ */
+public final class Modulus {
+
+    private static final int SMALL = 0, LARGE = 1, POW2 = 2;
+
+    public final long m;
+    private final int kind;
+    private final int k;   // bit length of m (LARGE)
+    private final long mu; // floor(2^64 / m) (SMALL) or floor(4^k / m) (LARGE), unsigned
+
+    private Modulus(long m) {
+        this.m = m;
+        this.k = 64 - Long.numberOfLeadingZeros(m);
+        if ((m & (m - 1)) == 0) {
+            kind = POW2;
+            mu = 0;
+        } else if (m <= 1L << 32) {
+            kind = SMALL;
+            mu = Long.divideUnsigned(-1L, m); // = floor(2^64 / m) as m is not a power of two
+        } else {
+            kind = LARGE;
+            mu = BigInteger.ONE.shiftLeft(2 * k).divide(BigInteger.valueOf(m)).longValue(); // < 2^(k+1)
+        }
+    }
+
+    /** 1 <= m < 2^63 */
+    public static Modulus of(long m) {
+        if (m < 1) throw new IllegalArgumentException("modulus must be >= 1");
+        return new Modulus(m);
+    }
+
+    /** x mod m for x < 2^64 (unsigned), m <= 2^32 */
+    private long reduce64(long x) {
+        long r = x - Montgomery.unsignedMultiplyHigh(x, mu) * m; // r < 2m <= 2^33
+        return r >= m ? r - m : r;
+    }
+
+    /** (hi * 2^64 + lo) mod m for a value below 4^k, m > 2^32 */
+    private long reduce128(long hi, long lo) {
+        long q1 = (hi << (65 - k)) | (lo >>> (k - 1));   // x >> (k - 1), below 2^(k+1)
+        long q3 = (Montgomery.unsignedMultiplyHigh(q1, mu) << (63 - k)) | (q1 * mu >>> k >>> 1); // q1 mu >> (k + 1)
+        long t = q3 * m;
+        long rlo = lo - t;
+        long rhi = hi - Montgomery.unsignedMultiplyHigh(q3, m) - (Long.compareUnsigned(lo, t) < 0 ? 1 : 0);
+        while (rhi != 0 || Long.compareUnsigned(rlo, m) >= 0) { // r < 3m: runs at most twice
+            if (Long.compareUnsigned(rlo, m) < 0) rhi--;
+            rlo -= m;
+        }
+        return rlo;
+    }
+
+    private long reduceUnsigned(long x) {
+        switch (kind) {
+            case SMALL: return reduce64(x);
+            case LARGE: return reduce128(0, x);
+            default:    return x & (m - 1);
+        }
+    }
+
+    /** a mod m in [0, m) for any long a */
+    public long reduce(long a) {
+        if (a >= 0 && a < m) return a;
+        long r = reduceUnsigned(a < 0 ? -a : a); // -Long.MIN_VALUE reads as 2^63 unsigned
+        return a < 0 && r != 0 ? m - r : r;
+    }
+
+    // ---------- arithmetic on residues in [0, m) ----------
+
+    public long add(long a, long b) {
+        long s = a - m + b; // a, b < m < 2^63, so a - m + b never overflows
+        return s < 0 ? s + m : s;
+    }
+
+    public long sub(long a, long b) {
+        long d = a - b;
+        return d < 0 ? d + m : d;
+    }
+
+    public long neg(long a) {
+        return a == 0 ? 0 : m - a;
+    }
+
+    public long mul(long a, long b) {
+        switch (kind) {
+            case SMALL: return reduce64(a * b);
+            case LARGE: return reduce128(Montgomery.unsignedMultiplyHigh(a, b), a * b);
+            default:    return a * b & (m - 1);
+        }
+    }
+
+    /** a^e mod m for any long a and e >= 0 */
+    public long pow(long a, long e) {
+        if (e < 0) throw new IllegalArgumentException("exponent must be >= 0");
+        a = reduce(a);
+        long r = reduce(1);
+        while (e > 0) {
+            if ((e & 1) == 1) r = mul(r, a);
+            a = mul(a, a);
+            e >>>= 1;
+        }
+        return r;
+    }
+
+    /** a^-1 mod m by the extended Euclidean algorithm; any modulus, gcd(a, m) must be 1 */
+    public long inverse(long a) {
+        long r0 = m, r1 = reduce(a);
+        long t0 = 0, t1 = 1; // |t| <= m throughout, so nothing overflows
+        while (r1 != 0) {
+            long q = r0 / r1;
+            long r = r0 - q * r1;
+            r0 = r1;
+            r1 = r;
+            long t = t0 - q * t1;
+            t0 = t1;
+            t1 = t;
+        }
+        if (r0 != 1) throw new IllegalArgumentException("Inverse doesn't exist when gcd(a, mod) != 1");
+        return reduce(t0);
+    }
+
+    /** a * b^-1 mod m */
+    public long divide(long a, long b) {
+        return mul(reduce(a), inverse(b));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Modulus && ((Modulus) o).m == m;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(m);
+    }
+
+    @Override
+    public String toString() {
+        return "Modulus(" + m + ")";
+    }
+
+    public static void main(String[] args) {
+        Modulus p = of(1_000_000_007L);
+        System.out.println("2^(p-1) mod p = " + p.pow(2, p.m - 1) + ", 3^-1 = " + p.inverse(3));
+
+        Modulus big = of(9_223_372_036_854_775_783L); // largest prime below 2^63
+        System.out.println("(m-1)^2 mod m = " + big.mul(big.m - 1, big.m - 1) + " (expected 1)");
+        System.out.println("2^(m-1) mod m = " + big.pow(2, big.m - 1) + " (expected 1)");
+
+        long x = 3, start = System.nanoTime();
+        for (int i = 0; i < 100_000_000; i++) x = p.mul(x, x);
+        System.out.println("1e8 Barrett squarings mod 1e9+7: " + (System.nanoTime() - start) / 1_000_000 + " ms (" + x + ")");
+        x = 3;
+        start = System.nanoTime();
+        for (int i = 0; i < 100_000_000; i++) x = x * x % p.m;
+        System.out.println("1e8 % squarings mod 1e9+7: " + (System.nanoTime() - start) / 1_000_000 + " ms (" + x + ")");
+    }
+}
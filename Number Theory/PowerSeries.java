@@ -0,0 +1,364 @@
+import java.util.Arrays;
+
+/**
+ * PowerSeries - truncated formal power series mod a prime p < 2^31 on top of Poly:
+ * inverse, log, exp, pow and sqrt by Newton iteration in O(n log n), and the counting
+ * sequences that come out of them.
+ *
+ * A series is a long[] with coefficient i at index i; every operation takes the number n of
+ * coefficients wanted and returns exactly that many (inputs may be shorter or longer).
+ *  - inverse: b <- b (2 - a b), doubling the precision each step. A step runs on length-2m
+ *    cyclic transforms, whose wrap-around only lands on coefficients already known: five
+ *    transforms per step, through Poly.spectra so b's transform serves both products.
+ *  - log a = integral(a' / a), for a_0 = 1
+ *  - exp: b <- b (1 + a - log b), for a_0 = 0, with 1/b updated alongside instead of recomputed
+ *  - pow: a^k = c^k x^(t k) exp(k log(a / (c x^t))) with c x^t the lowest term of a
+ *  - sqrt: the same with k = 1/2 and c^(1/2) from TonelliShanks
+ * log, exp, pow and sqrt divide by 1..n-1, so p must exceed n. Mod an NTT prime every transform
+ * is one NTT; other primes cost three NTTs and a Garner pass.
+ *
+ * Generators, the first n terms mod p:
+ *  - catalan, derangements: O(n) recurrences over the table of inverses 1..n, no products needed
+ *  - bell: exponential generating function exp(e^x - 1)
+ *  - partitions: 1 / (Euler's pentagonal series)
+ *  - stirlingSecond(n): the row S(n, 0..n), one product of i^n / i! and (-1)^j / j!
+ *  - stirlingFirst(n): the row of unsigned c(n, 0..n), the coefficients of x (x+1) ... (x+n-1),
+ *    by doubling R_2m(x) = R_m(x) R_m(x + m) with Taylor shifts
+ *
+ * Usage:
+ *   long[] b = PowerSeries.inverse(a, n, Poly.MOD);
+ *   long[] e = PowerSeries.exp(a, n, p), l = PowerSeries.log(a, n, p);
+ *   long[] bell = PowerSeries.bell(1_000_000, p), part = PowerSeries.partitions(1_000_000, p);
+ */
+public final class PowerSeries {
+
+    private PowerSeries() {}
+
+    private static Modulus modulus(long p) {
+        if (p < 2 || p >= ModArrays.MAX_MODULUS) throw new IllegalArgumentException("p must be a prime below 2^31");
+        return Modulus.of(p);
+    }
+
+    private static void checkSize(int n, long p) {
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        if (n >= p) throw new IllegalArgumentException("p must exceed n to divide by 1..n-1");
+    }
+
+    /** a b mod x^n */
+    private static long[] multiply(long[] a, long[] b, int n, long p) {
+        long[] c = Poly.multiply(a.length > n ? Arrays.copyOf(a, n) : a, b.length > n ? Arrays.copyOf(b, n) : b, p);
+        return Arrays.copyOf(c, n);
+    }
+
+    /** inv[i] = i^-1 mod p for 1 <= i < n, by inv[i] = -(p / i) inv[p mod i] */
+    private static long[] inverses(int n, Modulus m) {
+        long[] inv = new long[Math.max(n, 2)];
+        inv[1] = 1;
+        for (int i = 2; i < n; i++) inv[i] = m.neg(m.mul(m.m / i, inv[(int) (m.m % i)]));
+        return inv;
+    }
+
+    // ---------- inverse, log, exp, pow, sqrt ----------
+
+    /** First n coefficients of 1 / a; a_0 must be invertible mod p */
+    public static long[] inverse(long[] a, int n, long p) {
+        Modulus m = modulus(p);
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        long[] b = new long[n];
+        if (n == 0) return b;
+        long a0 = a.length > 0 ? m.reduce(a[0]) : 0;
+        if (a0 == 0) throw new ArithmeticException("constant term must be nonzero");
+        b[0] = m.inverse(a0);
+        for (int k = 1; k < n; k <<= 1) newtonStep(a, b, k, Math.min(2 * k, n), m);
+        return b;
+    }
+
+    /**
+     * b[k, len) from b[0, k) = 1/a mod x^k, len <= 2k: with f = a b mod (x^2k - 1), whose
+     * low half is 1 + wrap-around, b_new = b - b (f - 1) and only f[k, 2k) matters.
+     * The spectrum of b serves both products.
+     */
+    private static void newtonStep(long[] a, long[] b, int k, int len, Modulus m) {
+        long p = m.m;
+        long[][] g = Poly.spectra(Arrays.copyOf(b, k), 2 * k, p);
+        long[][] f = Poly.spectra(a, 2 * k, p);
+        Poly.multiplySpectra(f, g, f, p);
+        long[] e = Poly.fromSpectra(f, p);
+        Arrays.fill(e, 0, k, 0);
+        f = Poly.spectra(e, 2 * k, p);
+        Poly.multiplySpectra(f, g, f, p);
+        e = Poly.fromSpectra(f, p);
+        for (int i = k; i < len; i++) b[i] = m.neg(e[i]);
+    }
+
+    /** The first half of each row of a length-2k spectrum: the length-k spectrum of a mod (x^k - 1) */
+    private static long[][] firstHalf(long[][] s) {
+        long[][] h = new long[s.length][];
+        for (int r = 0; r < s.length; r++) h[r] = Arrays.copyOf(s[r], s[r].length / 2);
+        return h;
+    }
+
+    /** First n coefficients of log a, for a_0 = 1 and p > n */
+    public static long[] log(long[] a, int n, long p) {
+        Modulus m = modulus(p);
+        checkSize(n, p);
+        if (n == 0) return new long[0];
+        if ((a.length > 0 ? m.reduce(a[0]) : 0) != 1) throw new ArithmeticException("log needs a_0 = 1");
+        long[] da = new long[n];
+        for (int i = 1; i < Math.min(n + 1, a.length); i++) da[i - 1] = m.mul(m.reduce(a[i]), i);
+        long[] q = multiply(da, inverse(a, n, p), n, p);
+        long[] inv = inverses(n, m), out = new long[n];
+        for (int i = 1; i < n; i++) out[i] = m.mul(q[i - 1], inv[i]);
+        return out;
+    }
+
+    /** First n coefficients of exp a, for a_0 = 0 and p > n */
+    public static long[] exp(long[] a, int n, long p) {
+        Modulus m = modulus(p);
+        checkSize(n, p);
+        if (n == 0) return new long[0];
+        if ((a.length > 0 ? m.reduce(a[0]) : 0) != 0) throw new ArithmeticException("exp needs a_0 = 0");
+        return expNewton(a, n, m);
+    }
+
+    /**
+     * exp with 1/b carried along and every transform reused. Per doubling m -> 2m, with
+     * y = spectrum of b at length 2m (whose first half is that of b mod x^m - 1 at length m):
+     *  - c = 1/b goes from m/2 to m coefficients by one inverse Newton step on y's first half,
+     *  - x = A' b - b' for A = a mod x^m vanishes below x^(m-1), so c x is exact up to x^(2m-2)
+     *    and integrates to A - log b; adding a[m, 2m) gives h = a - log b, zero below x^m,
+     *  - b[m, 2m) = (b h)[m, 2m).
+     * Nine transforms of length 2m per step (per prime) against about 22 for log() and a product.
+     */
+    private static long[] expNewton(long[] a, int n, Modulus m) {
+        long p = m.m;
+        long[] b = new long[n];
+        b[0] = 1;
+        if (n == 1) return b;
+        b[1] = a.length > 1 ? m.reduce(a[1]) : 0;
+        long[] inv = inverses(n, m);
+        long[] c = new long[Math.max(n, 2)];
+        c[0] = 1;
+        long[][] cs = Poly.spectra(c, 2, p); // c at twice its precision
+        for (int k = 2; k < n; k <<= 1) {
+            long[][] y = Poly.spectra(b, 2 * k, p); // b[k, 2k) is still zero
+
+            long[][] z = firstHalf(y); // c from k/2 to k coefficients
+            Poly.multiplySpectra(z, cs, z, p);
+            long[] e = Poly.fromSpectra(z, p);
+            Arrays.fill(e, 0, k / 2, 0);
+            z = Poly.spectra(e, k, p);
+            Poly.multiplySpectra(z, cs, z, p);
+            e = Poly.fromSpectra(z, p);
+            for (int i = k / 2; i < k; i++) c[i] = m.neg(e[i]);
+            cs = Poly.spectra(Arrays.copyOf(c, k), 2 * k, p);
+
+            long[] x = new long[k]; // A' b - b', cyclic of length k
+            for (int i = 1; i < Math.min(k, a.length); i++) x[i - 1] = m.mul(m.reduce(a[i]), i);
+            long[][] xs = Poly.spectra(x, k, p);
+            Poly.multiplySpectra(xs, firstHalf(y), xs, p);
+            x = Poly.fromSpectra(xs, p);
+            long[] hi = new long[2 * k]; // unwrapped: coefficients k-1 .. 2k-2
+            hi[k - 1] = x[k - 1];
+            for (int i = 0; i < k - 1; i++) hi[k + i] = m.sub(x[i], m.mul(b[i + 1], i + 1));
+            long[][] hs = Poly.spectra(hi, 2 * k, p);
+            Poly.multiplySpectra(hs, cs, hs, p);
+            hi = Poly.fromSpectra(hs, p);
+
+            int end = Math.min(2 * k, n);
+            long[] h = new long[2 * k]; // a - log b, from x^k on
+            for (int i = k; i < end; i++) h[i] = m.add(m.mul(hi[i - 1], inv[i]), i < a.length ? m.reduce(a[i]) : 0);
+            hs = Poly.spectra(h, 2 * k, p);
+            Poly.multiplySpectra(hs, y, hs, p);
+            h = Poly.fromSpectra(hs, p);
+            System.arraycopy(h, k, b, k, end - k);
+        }
+        return b;
+    }
+
+    /** First n coefficients of a^k for k >= 0 and p > n */
+    public static long[] pow(long[] a, long k, int n, long p) {
+        Modulus m = modulus(p);
+        checkSize(n, p);
+        if (k < 0) throw new IllegalArgumentException("k must be >= 0");
+        long[] out = new long[n];
+        if (k == 0) {
+            if (n > 0) out[0] = 1;
+            return out;
+        }
+        int t = lowest(a, n, m);
+        if (t < 0 || t > (n - 1) / k) return out; // x^(t k) is already past x^(n-1)
+        int shift = (int) (t * k), len = n - shift;
+        long[] r = rest(a, t, len, m);
+        long[] l = log(r, len, p);
+        ModArrays.scale(l, m.reduce(k), l, p);
+        long[] e = exp(l, len, p);
+        ModArrays.scale(e, m.pow(a[t], k), e, p);
+        System.arraycopy(e, 0, out, shift, len);
+        return out;
+    }
+
+    /** First n coefficients of a square root of a for odd p > n, or null if a has none */
+    public static long[] sqrt(long[] a, int n, long p) {
+        Modulus m = modulus(p);
+        checkSize(n, p);
+        long[] out = new long[n];
+        int t = lowest(a, n, m);
+        if (t < 0) return out;
+        if ((t & 1) == 1) return null;
+        long c = TonelliShanks.tonelliShanks(m.reduce(a[t]), p);
+        if (c < 0) return null;
+        int shift = t / 2, len = n - shift;
+        long[] l = log(rest(a, t, len, m), len, p);
+        ModArrays.scale(l, (p + 1) / 2, l, p);
+        long[] e = exp(l, len, p);
+        ModArrays.scale(e, c, e, p);
+        System.arraycopy(e, 0, out, shift, len);
+        return out;
+    }
+
+    /** Index of the lowest nonzero coefficient below n, or -1 */
+    private static int lowest(long[] a, int n, Modulus m) {
+        for (int i = 0; i < Math.min(n, a.length); i++) if (m.reduce(a[i]) != 0) return i;
+        return -1;
+    }
+
+    /** a / (a_t x^t) mod x^len, which starts with 1 */
+    private static long[] rest(long[] a, int t, int len, Modulus m) {
+        long c = m.inverse(m.reduce(a[t]));
+        long[] r = new long[len];
+        for (int i = 0; i < len && t + i < a.length; i++) r[i] = m.mul(m.reduce(a[t + i]), c);
+        return r;
+    }
+
+    // ---------- counting sequences ----------
+
+    /** Catalan numbers C_0 .. C_(n-1) mod p, p > n: C_(i+1) = C_i 2 (2i + 1) / (i + 2) */
+    public static long[] catalan(int n, long p) {
+        Modulus m = modulus(p);
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        if (n + 1 >= p) throw new IllegalArgumentException("p must exceed n + 1");
+        long[] inv = inverses(n + 2, m), c = new long[n];
+        if (n > 0) c[0] = 1;
+        for (int i = 0; i + 1 < n; i++) c[i + 1] = m.mul(m.mul(c[i], 2L * (2 * i + 1) % p), inv[i + 2]);
+        return c;
+    }
+
+    /** Derangement counts D_0 .. D_(n-1) mod p (any p): D_i = (i - 1) (D_(i-1) + D_(i-2)) */
+    public static long[] derangements(int n, long p) {
+        Modulus m = modulus(p);
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        long[] d = new long[n];
+        if (n > 0) d[0] = m.reduce(1);
+        for (int i = 2; i < n; i++) d[i] = m.mul(m.reduce(i - 1), m.add(d[i - 1], d[i - 2]));
+        return d;
+    }
+
+    /** Bell numbers B_0 .. B_(n-1) mod p, p > n: i! [x^i] exp(e^x - 1) */
+    public static long[] bell(int n, long p) {
+        Modulus m = modulus(p);
+        checkSize(n, p);
+        if (n == 0) return new long[0];
+        long[] fact = ModArrays.factorials(n - 1, p), inv = ModArrays.inverseFactorials(fact, p);
+        long[] g = inv.clone();
+        g[0] = 0;
+        long[] b = exp(g, n, p);
+        ModArrays.mul(b, fact, b, p);
+        return b;
+    }
+
+    /** Partition numbers p(0) .. p(n-1) mod p: 1 / sum_k (-1)^k x^(k (3k - 1) / 2) over all k */
+    public static long[] partitions(int n, long p) {
+        Modulus m = modulus(p);
+        if (n < 0) throw new IllegalArgumentException("n must be >= 0");
+        long[] e = new long[n];
+        if (n == 0) return e;
+        e[0] = 1;
+        for (long k = 1; k * (3 * k - 1) / 2 < n; k++) {
+            long sign = (k & 1) == 1 ? m.neg(1) : 1;
+            e[(int) (k * (3 * k - 1) / 2)] = sign;
+            if (k * (3 * k + 1) / 2 < n) e[(int) (k * (3 * k + 1) / 2)] = sign;
+        }
+        return inverse(e, n, p);
+    }
+
+    /** Stirling numbers of the second kind S(n, 0..n) mod p, p > n */
+    public static long[] stirlingSecond(int n, long p) {
+        Modulus m = modulus(p);
+        checkSize(n, p);
+        long[] fact = ModArrays.factorials(n, p), inv = ModArrays.inverseFactorials(fact, p);
+        long[] a = new long[n + 1], b = new long[n + 1];
+        for (int i = 0; i <= n; i++) {
+            a[i] = m.mul(m.pow(i, n), inv[i]); // 0^0 = 1
+            b[i] = (i & 1) == 0 ? inv[i] : m.neg(inv[i]);
+        }
+        return multiply(a, b, n + 1, p);
+    }
+
+    /** Unsigned Stirling numbers of the first kind c(n, 0..n) mod p, p > n */
+    public static long[] stirlingFirst(int n, long p) {
+        Modulus m = modulus(p);
+        checkSize(n, p);
+        long[] fact = ModArrays.factorials(n, p), inv = ModArrays.inverseFactorials(fact, p);
+        long[] r = {1}; // R_k(x) = x (x+1) ... (x+k-1)
+        int k = 0;
+        for (int bit = 31 - Integer.numberOfLeadingZeros(Math.max(n, 1)); bit >= 0; bit--) {
+            if (k > 0) {
+                r = Poly.multiply(r, taylorShift(r, k, fact, inv, m), p);
+                k *= 2;
+            }
+            if ((n >>> bit & 1) == 1) { // times (x + k)
+                long[] next = new long[r.length + 1];
+                for (int i = 0; i < r.length; i++) {
+                    next[i] = m.add(next[i], m.mul(r[i], k));
+                    next[i + 1] = r[i];
+                }
+                r = next;
+                k++;
+            }
+        }
+        return Arrays.copyOf(r, n + 1);
+    }
+
+    /** P(x + c): (j! Q_j) is the reversed (i! P_i) convolved with c^k / k! */
+    private static long[] taylorShift(long[] poly, long c, long[] fact, long[] inv, Modulus m) {
+        int d = poly.length - 1;
+        long[] a = new long[d + 1], b = new long[d + 1];
+        long ck = 1;
+        for (int i = 0; i <= d; i++) {
+            a[d - i] = m.mul(poly[i], fact[i]);
+            b[i] = m.mul(ck, inv[i]);
+            ck = m.mul(ck, c);
+        }
+        long[] conv = Poly.multiply(a, b, m.m), q = new long[d + 1];
+        for (int j = 0; j <= d; j++) q[j] = m.mul(conv[d - j], inv[j]);
+        return q;
+    }
+
+    public static void main(String[] args) {
+        long p = Poly.MOD;
+        System.out.println("Catalan:     " + Arrays.toString(catalan(10, p)));
+        System.out.println("Derangement: " + Arrays.toString(derangements(10, p)));
+        System.out.println("Bell:        " + Arrays.toString(bell(10, p)));
+        System.out.println("Partitions:  " + Arrays.toString(partitions(10, p)));
+        System.out.println("S(5, k):     " + Arrays.toString(stirlingSecond(5, p)));
+        System.out.println("c(5, k):     " + Arrays.toString(stirlingFirst(5, p)));
+        long[] root = sqrt(new long[]{1, 1}, 6, p);
+        System.out.println("sqrt(1 + x)^2 = " + Arrays.toString(Arrays.copyOf(Poly.multiply(root, root), 6)));
+
+        int n = 1_000_000;
+        for (long q : new long[]{p, 1_000_000_007L}) {
+            for (int rep = 0; rep < 2; rep++) {
+                long t0 = System.nanoTime();
+                long[] part = partitions(n, q);
+                long t1 = System.nanoTime();
+                long[] b = bell(n, q);
+                long t2 = System.nanoTime();
+                long[] s = stirlingFirst(n, q);
+                long t3 = System.nanoTime();
+                System.out.println("mod " + q + ", n = 1e6: partitions " + (t1 - t0) / 1_000_000 + " ms, Bell " + (t2 - t1) / 1_000_000
+                        + " ms, c(n, k) row " + (t3 - t2) / 1_000_000 + " ms (" + part[n - 1] + ", " + b[n - 1] + ", " + s[1] + ")");
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.zip.CRC32C;
+
+/**
+ * PrimeTableFile - persistent prime tables opened through FileChannel.map.
+ *
+ * A table is written once (wheel sieve bitset or odd-only SPF array) to a versioned,
+ * checksummed file. Later processes map it read-only and answer isPrime / spf straight
+ * from the page cache: nothing is copied onto the heap, and every JVM on the host that
+ * maps the same file shares the same physical pages.
+ *
+ * Layout (little endian):
+ *   [0, 64)  header: magic, version, kind, limit, payload bytes, CRC32C of payload
+ *   [64, ..) payload: SIEVE = WheelSieve bits as longs, SPF = spf(2i + 1) as ints
+ *
+ * Usage:
+ *   PrimeTableFile.writeSieve(path, new WheelSieve(1_000_000_000L));
+ *   try (PrimeTableFile t = PrimeTableFile.open(path)) { t.isPrime(999_999_937L); }
+ */
+public class PrimeTableFile implements AutoCloseable {
+
+    public static final int KIND_SIEVE = 1;
+    public static final int KIND_SPF = 2;
+
+    private static final long MAGIC = 0x4C4254454D495250L; // "PRIMETBL"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    // payload is mapped in regions of this size; a multiple of 8 so no value straddles two regions
+    private static final long REGION_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final int kind;
+    private final long limit;
+
+    private PrimeTableFile(FileChannel channel, MappedByteBuffer[] regions, int kind, long limit) {
+        this.channel = channel;
+        this.regions = regions;
+        this.kind = kind;
+        this.limit = limit;
+    }
+
+    // ---------- writing ----------
+
+    /** Writes the bitset of a WheelSieve; the file covers [0, sieve.limit()] */
+    public static void writeSieve(Path path, WheelSieve sieve) throws IOException {
+        long[] bits = sieve.compositeBits();
+        write(path, KIND_SIEVE, sieve.limit(), (long) bits.length * 8, (buf, from) -> {
+            int i = (int) (from / 8);
+            while (buf.remaining() >= 8 && i < bits.length) buf.putLong(bits[i++]);
+        });
+    }
+
+    /**
+     * Builds the smallest-prime-factor table up to limit with the linear sieve and writes
+     * spf for odd numbers only (even numbers have spf 2), halving the file.
+     */
+    public static void writeSpf(Path path, int limit) throws IOException {
+        int[] spf = LinearSieveWithSPF.spf(limit);
+        long odds = limit / 2 + 1; // 1, 3, 5, ... <= limit (and 1 when limit = 0)
+        write(path, KIND_SPF, limit, odds * 4, (buf, from) -> {
+            long i = from / 4;
+            while (buf.remaining() >= 4 && i < odds) {
+                long n = 2 * i + 1;
+                buf.putInt(n <= limit ? spf[(int) n] : 0);
+                i++;
+            }
+        });
+    }
+
+    private interface PayloadWriter {
+        /** Fills buf with payload bytes starting at byte offset 'from' */
+        void fill(ByteBuffer buf, long from);
+    }
+
+    private static void write(Path path, int kind, long limit, long payloadBytes, PayloadWriter payload)
+            throws IOException {
+        // write to a fresh temp file next to the target and move into place, so readers never map a
+        // partial file and concurrent writers never share one
+        Path dir = path.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        boolean moved = false;
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                CRC32C crc = new CRC32C();
+                ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+                long written = 0;
+                ch.position(HEADER_BYTES);
+                while (written < payloadBytes) {
+                    buf.clear();
+                    if (payloadBytes - written < buf.capacity()) buf.limit((int) (payloadBytes - written));
+                    payload.fill(buf, written);
+                    buf.flip();
+                    crc.update(buf.duplicate());
+                    written += buf.remaining();
+                    while (buf.hasRemaining()) ch.write(buf);
+                }
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putLong(MAGIC).putInt(VERSION).putInt(kind).putLong(limit)
+                      .putLong(payloadBytes).putLong(crc.getValue());
+                header.clear();
+                ch.write(header, 0);
+                ch.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!moved) Files.deleteIfExists(tmp);
+        }
+    }
+
+    // ---------- reading ----------
+
+    /** Maps a table file read-only after checking header and checksum */
+    public static PrimeTableFile open(Path path) throws IOException {
+        return open(path, true);
+    }
+
+    /**
+     * Maps a table file read-only.
+     * verifyChecksum = false skips the CRC pass (which touches every page) for fast restarts
+     * of trusted files; the header is always validated.
+     */
+    public static PrimeTableFile open(Path path, boolean verifyChecksum) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (ch.read(header, header.position()) < 0) throw new IOException("Truncated header: " + path);
+            }
+            header.flip();
+            if (header.getLong() != MAGIC) throw new IOException("Not a prime table: " + path);
+            int version = header.getInt();
+            if (version != VERSION) throw new IOException("Unsupported prime table version " + version);
+            int kind = header.getInt();
+            long limit = header.getLong();
+            long payloadBytes = header.getLong();
+            long checksum = header.getLong();
+            if (kind != KIND_SIEVE && kind != KIND_SPF) throw new IOException("Unknown table kind " + kind);
+            if (ch.size() != HEADER_BYTES + payloadBytes) throw new IOException("Size mismatch: " + path);
+
+            int count = (int) ((payloadBytes + REGION_BYTES - 1) / REGION_BYTES);
+            MappedByteBuffer[] regions = new MappedByteBuffer[count];
+            CRC32C crc = new CRC32C();
+            for (int r = 0; r < count; r++) {
+                long start = r * REGION_BYTES;
+                long size = Math.min(REGION_BYTES, payloadBytes - start);
+                regions[r] = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + start, size);
+                regions[r].order(ByteOrder.LITTLE_ENDIAN);
+                if (verifyChecksum) crc.update(regions[r].duplicate());
+            }
+            if (verifyChecksum && crc.getValue() != checksum)
+                throw new IOException("Checksum mismatch, file is corrupt: " + path);
+            return new PrimeTableFile(ch, regions, kind, limit);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    public int kind() {
+        return kind;
+    }
+
+    /** Upper bound (inclusive) covered by the table */
+    public long limit() {
+        return limit;
+    }
+
+    /** Returns true if n is prime. Requires 0 <= n <= limit() */
+    public boolean isPrime(long n) {
+        checkRange(n);
+        if (kind == KIND_SPF) return n >= 2 && spf(n) == n;
+        if (n < 7) return n == 2 || n == 3 || n == 5;
+        long bit = WheelSieve.wheelBit(n);
+        if (bit < 0) return false;
+        return (longAt((bit >>> 6) * 8) & (1L << bit)) == 0;
+    }
+
+    /** Smallest prime factor of n (2 <= n <= limit()); only for KIND_SPF tables */
+    public int spf(long n) {
+        if (kind != KIND_SPF) throw new IllegalStateException("Table holds a sieve, not SPF");
+        checkRange(n);
+        if (n < 2) throw new IllegalArgumentException("spf undefined for " + n);
+        if ((n & 1) == 0) return 2;
+        return intAt((n >>> 1) * 4);
+    }
+
+    private void checkRange(long n) {
+        if (n < 0 || n > limit) throw new IllegalArgumentException("n outside table range: " + n);
+    }
+
+    private long longAt(long offset) {
+        return regions[(int) (offset / REGION_BYTES)].getLong((int) (offset % REGION_BYTES));
+    }
+
+    private int intAt(long offset) {
+        return regions[(int) (offset / REGION_BYTES)].getInt((int) (offset % REGION_BYTES));
+    }
+
+    /**
+     * Closes the channel. The mapping itself is released by the JVM once unreachable,
+     * so do not use the table after closing it.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("primetable");
+        Path sievePath = dir.resolve("sieve-1e8.bin");
+        Path spfPath = dir.resolve("spf-1e6.bin");
+
+        writeSieve(sievePath, new WheelSieve(100_000_000L));
+        writeSpf(spfPath, 1_000_000);
+
+        try (PrimeTableFile sieve = open(sievePath);
+             PrimeTableFile spf = open(spfPath, false)) {
+            System.out.println("Is 99999989 prime? " + sieve.isPrime(99_999_989L));
+            System.out.println("Is 99999990 prime? " + sieve.isPrime(99_999_990L));
+            System.out.println("spf(999999) = " + spf.spf(999_999) + ", spf(999983) = " + spf.spf(999_983));
+        }
+        System.out.println("Tables written to " + dir);
+    }
+}
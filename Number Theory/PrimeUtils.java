@@ -35,6 +35,11 @@ public class PrimeUtils {
         return isPrime;
     }
 
+    // Compact variant: bit-packed mod-30 wheel, about n / 30 bytes instead of n + 1
+    public static WheelSieve compactSieve(long n) {
+        return new WheelSieve(n);
+    }
+
     // ----------------------------
     // 3️⃣ Smallest Prime Factor (SPF)
     // ----------------------------
@@ -65,6 +70,45 @@ public class PrimeUtils {
         return factors;
     }
 
+    /**
+     * Reusable holder for one factorization: primes[i]^exps[i] for i < size, primes ascending.
+     * Any int has at most 9 distinct prime factors, so the arrays never grow.
+     */
+    public static class FactorBuffer {
+        static final int MAX_DISTINCT = 9; // 2*3*5*7*11*13*17*19*23 < 2^31 < that * 29
+
+        public final int[] primes = new int[MAX_DISTINCT];
+        public final int[] exps = new int[MAX_DISTINCT];
+        public int size;
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("{");
+            for (int i = 0; i < size; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(primes[i]).append('=').append(exps[i]);
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    // Allocation-free variant: fills out and returns the number of distinct primes
+    public static int factorize(int n, int[] spf, FactorBuffer out) {
+        int size = 0;
+        while (n > 1) {
+            int p = spf[n];
+            int e = 0;
+            do {
+                n /= p;
+                e++;
+            } while (n % p == 0);
+            out.primes[size] = p;
+            out.exps[size++] = e;
+        }
+        out.size = size;
+        return size;
+    }
+
     // ----------------------------
     // 5️⃣ Count & sum of divisors
     // ----------------------------
@@ -79,12 +123,33 @@ public class PrimeUtils {
         for (Map.Entry<Integer, Integer> e : factors.entrySet()) {
             int p = e.getKey();
             int a = e.getValue();
-            long term = (long) ((Math.pow(p, a + 1) - 1) / (p - 1));
-            sum *= term;
+            sum *= primePowerSum(p, a);
         }
         return sum;
     }
 
+    public static long countDivisors(FactorBuffer f) {
+        long count = 1;
+        for (int i = 0; i < f.size; i++) count *= f.exps[i] + 1;
+        return count;
+    }
+
+    public static long sumDivisors(FactorBuffer f) {
+        long sum = 1;
+        for (int i = 0; i < f.size; i++) sum *= primePowerSum(f.primes[i], f.exps[i]);
+        return sum;
+    }
+
+    // 1 + p + ... + p^a, exact (Math.pow loses precision past 2^53)
+    private static long primePowerSum(long p, int a) {
+        long term = 1, pk = 1;
+        for (int i = 0; i < a; i++) {
+            pk *= p;
+            term += pk;
+        }
+        return term;
+    }
+
     // ----------------------------
     // ✅ Testing
     // ----------------------------
@@ -95,6 +160,7 @@ public class PrimeUtils {
         System.out.print("Primes up to 50: ");
         for (int i = 2; i <= 50; i++) if (sieve[i]) System.out.print(i + " ");
         System.out.println();
+        System.out.println("Is 1000003 prime (compact sieve)? " + compactSieve(2_000_000).isPrime(1_000_003));
 
         int[] spf = computeSPF(100);
         int n = 84;
@@ -102,5 +168,10 @@ public class PrimeUtils {
         System.out.println("Prime factorization of " + n + " = " + factors);
         System.out.println("Count of divisors: " + countDivisors(factors));
         System.out.println("Sum of divisors: " + sumDivisors(factors));
+
+        FactorBuffer buf = new FactorBuffer(); // reused across calls, no allocation per number
+        factorize(n, spf, buf);
+        System.out.println("Buffer factorization of " + n + " = " + buf
+                + ", divisors: " + countDivisors(buf) + ", sum: " + sumDivisors(buf));
     }
 }
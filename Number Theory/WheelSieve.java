@@ -0,0 +1,198 @@
+import java.util.*;
+import java.util.function.LongConsumer;
+
+/**
+ * WheelSieve - bit-packed Sieve of Eratosthenes on a mod-30 wheel.
+ *
+ * Only the 8 residues coprime to 30 (1, 7, 11, 13, 17, 19, 23, 29) are stored,
+ * one bit each, in a long[] bitset. A byte covers 30 integers, so the table
+ * takes about limit / 30 bytes (67 MB for limit = 2e9, versus 2 GB for boolean[]).
+ *
+ * Usage:
+ *   WheelSieve ws = new WheelSieve(2_000_000_000L);
+ *   ws.isPrime(1_000_000_007L);
+ *   ws.forEachPrime(p -> ...);
+ */
+public class WheelSieve {
+
+    private static final int[] RESIDUES = {1, 7, 11, 13, 17, 19, 23, 29};
+    // distance from RESIDUES[i] to the next coprime residue
+    private static final int[] GAPS = {6, 4, 2, 4, 2, 4, 6, 2};
+    // position of r in RESIDUES, or -1 if gcd(r, 30) > 1
+    private static final int[] INDEX = new int[30];
+    // primes dividing 30, which the wheel does not store
+    private static final long[] WHEEL_PRIMES = {2, 3, 5};
+
+    static {
+        Arrays.fill(INDEX, -1);
+        for (int i = 0; i < RESIDUES.length; i++) INDEX[RESIDUES[i]] = i;
+    }
+
+    /** Largest limit whose bit count still fits in a long[] */
+    public static final long MAX_LIMIT = (long) Integer.MAX_VALUE / 8 * 64 * 30 - 1;
+
+    private final long limit;
+    private final long[] composite; // bit set = composite (or 1)
+
+    /**
+     * Sieves all primes up to limit (inclusive).
+     * Time: O(n log log n), Memory: about n / 30 bytes
+     */
+    public WheelSieve(long limit) {
+        if (limit < 0 || limit > MAX_LIMIT)
+            throw new IllegalArgumentException("limit out of range: " + limit);
+        this.limit = limit;
+        long bits = (limit / 30 + 1) * 8;
+        this.composite = new long[(int) ((bits + 63) >>> 6)];
+        composite[0] |= 1L; // 1 is not prime
+        sieve();
+    }
+
+    private void sieve() {
+        // walk candidates p = 7, 11, 13, ... along the wheel
+        int pi = 1;
+        for (long p = 7; p * p <= limit; ) {
+            if (!testBit(bitIndex(p))) {
+                // cross off p * q for wheel values q >= p
+                long m = p * p;
+                int qi = pi;
+                while (m <= limit) {
+                    setBit(bitIndex(m));
+                    m += p * GAPS[qi];
+                    qi = (qi + 1) & 7;
+                }
+            }
+            p += GAPS[pi];
+            pi = (pi + 1) & 7;
+        }
+    }
+
+    private static long bitIndex(long n) {
+        return (n / 30) * 8 + INDEX[(int) (n % 30)];
+    }
+
+    /** Bit position of n in the wheel layout, or -1 if n shares a factor with 30 */
+    static long wheelBit(long n) {
+        int idx = INDEX[(int) (n % 30)];
+        return idx < 0 ? -1 : (n / 30) * 8 + idx;
+    }
+
+    /** Backing bitset (bit set = composite), shared, not copied */
+    long[] compositeBits() {
+        return composite;
+    }
+
+    private static long valueAt(long bit) {
+        return (bit >>> 3) * 30 + RESIDUES[(int) (bit & 7)];
+    }
+
+    private boolean testBit(long bit) {
+        return (composite[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    private void setBit(long bit) {
+        composite[(int) (bit >>> 6)] |= 1L << bit;
+    }
+
+    /** Upper bound (inclusive) this sieve was built for */
+    public long limit() {
+        return limit;
+    }
+
+    /** Returns true if n is prime. Requires 0 <= n <= limit() */
+    public boolean isPrime(long n) {
+        if (n < 0 || n > limit) throw new IllegalArgumentException("n outside sieved range: " + n);
+        if (n < 7) return n == 2 || n == 3 || n == 5;
+        int idx = INDEX[(int) (n % 30)];
+        if (idx < 0) return false;
+        return !testBit((n / 30) * 8 + idx);
+    }
+
+    /** Calls action for every prime <= limit in ascending order, without boxing */
+    public void forEachPrime(LongConsumer action) {
+        for (long p : WHEEL_PRIMES) if (p <= limit) action.accept(p);
+        for (int w = 0; w < composite.length; w++) {
+            long bits = ~composite[w];
+            while (bits != 0) {
+                long bit = ((long) w << 6) + Long.numberOfTrailingZeros(bits);
+                long v = valueAt(bit);
+                if (v > limit) return;
+                action.accept(v);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /** Iterator over the primes <= limit in ascending order */
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int small = 0;       // index into WHEEL_PRIMES
+            private int word = -1;
+            private long bits = 0;
+            private long next = advance();
+
+            private long advance() {
+                while (small < 3) {
+                    long p = WHEEL_PRIMES[small++];
+                    if (p <= limit) return p;
+                }
+                while (bits == 0) {
+                    if (++word >= composite.length) return -1;
+                    bits = ~composite[word];
+                }
+                long v = valueAt(((long) word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+                return v <= limit ? v : -1;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != -1;
+            }
+
+            @Override
+            public long nextLong() {
+                if (next == -1) throw new NoSuchElementException();
+                long v = next;
+                next = advance();
+                return v;
+            }
+        };
+    }
+
+    /** Number of primes <= limit */
+    public long count() {
+        long count = 0;
+        for (long p : WHEEL_PRIMES) if (p <= limit) count++;
+        for (long w : composite) count += Long.bitCount(~w);
+        // drop the padding bits past limit
+        long lastBit = (long) composite.length * 64 - 1;
+        for (long bit = lastBit; bit >= 0 && valueAt(bit) > limit; bit--) {
+            if (!testBit(bit)) count--;
+        }
+        return count;
+    }
+
+    /**
+     * Returns all primes <= limit as a primitive array.
+     * Throws if the count does not fit in an array.
+     */
+    public long[] getPrimes() {
+        long c = count();
+        if (c > Integer.MAX_VALUE - 8) throw new IllegalStateException("Too many primes for an array: " + c);
+        long[] primes = new long[(int) c];
+        int[] k = {0};
+        forEachPrime(p -> primes[k[0]++] = p);
+        return primes;
+    }
+
+    public static void main(String[] args) {
+        WheelSieve ws = new WheelSieve(100);
+        System.out.println("Primes up to 100: " + Arrays.toString(ws.getPrimes()));
+        System.out.println("Count up to 100: " + ws.count());
+
+        WheelSieve big = new WheelSieve(100_000_000);
+        System.out.println("pi(1e8) = " + big.count() + " (expected 5761455)");
+        System.out.println("Is 99999989 prime? " + big.isPrime(99_999_989));
+    }
+}
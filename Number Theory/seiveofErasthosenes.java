@@ -26,17 +26,25 @@ public class SieveOfEratosthenes {
         return isPrime;
     }
 
+    /**
+     * Generates a compact sieve up to n (one bit per number coprime to 30).
+     * Prefer this over generateSieve for large n: about n / 30 bytes instead of n bytes.
+     * @param n Upper limit (inclusive)
+     * @return WheelSieve answering isPrime / forEachPrime / getPrimes
+     */
+    public static WheelSieve generateCompactSieve(long n) {
+        return new WheelSieve(n);
+    }
+
     /**
      * Returns a list of all primes up to n using the sieve.
      * @param n Upper limit
      * @return List of primes ≤ n
      */
     public static List<Integer> getPrimes(int n) {
-        boolean[] sieve = generateSieve(n);
         List<Integer> primes = new ArrayList<>();
-        for (int i = 2; i <= n; i++) {
-            if (sieve[i]) primes.add(i);
-        }
+        if (n < 2) return primes;
+        new WheelSieve(n).forEachPrime(p -> primes.add((int) p));
         return primes;
     }
 
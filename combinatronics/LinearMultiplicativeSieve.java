@@ -0,0 +1,182 @@
+import java.util.*;
+
+/**
+ * LinearMultiplicativeSieve
+ *
+ * - table(n, f): any multiplicative f, given only its values on prime powers, for 1..n in O(n)
+ * - compute(n, k, flags): phi, mu, sigma_k, tau and omega fused into one pass
+ *
+ * Both run the linear (Euler) sieve: every composite m is reached exactly once as i * p
+ * with p = lpf(m). Alongside f we keep lpPow[m], the full power of lpf(m) dividing m,
+ * so m splits into the coprime parts lpPow[m] and m / lpPow[m] in O(1).
+ *
+ * Complexity: O(n) time, one pass over memory however many functions are requested.
+ */
+public class LinearMultiplicativeSieve {
+
+    /** f(p^k) for prime p, k >= 1, where pk = p^k */
+    @FunctionalInterface
+    public interface PrimePowerFunction {
+        long at(int p, int k, long pk);
+    }
+
+    public static final int PHI = 1, MU = 2, SIGMA = 4, TAU = 8, OMEGA = 16;
+    public static final int ALL = PHI | MU | SIGMA | TAU | OMEGA;
+
+    /** Result of compute(): arrays for the requested functions, null for the others. Index 0 is unused. */
+    public static class Tables {
+        public int[] phi;     // Euler totient
+        public byte[] mu;     // Mobius
+        public long[] sigma;  // sum of d^k over divisors d
+        public int[] tau;     // number of divisors
+        public byte[] omega;  // number of distinct prime factors
+        public int[] primes;  // primes <= n, ascending
+    }
+
+    /**
+     * Fills f[1..n] for the multiplicative function defined by f(p^k).
+     * Time: O(n); f itself is only called on prime powers
+     */
+    public static long[] table(int n, PrimePowerFunction f) {
+        long[] val = new long[n + 1];
+        if (n < 1) return val;
+        int[] lpPow = new int[n + 1];
+        byte[] exp = new byte[n + 1];
+        int[] primes = new int[LinearSieveWithSPF.maxPrimeCount(n)];
+        int pc = 0;
+        val[1] = 1;
+        for (int i = 2; i <= n; i++) {
+            if (lpPow[i] == 0) {
+                primes[pc++] = i;
+                lpPow[i] = i;
+                exp[i] = 1;
+                val[i] = f.at(i, 1, i);
+            }
+            for (int j = 0; j < pc; j++) {
+                int p = primes[j];
+                long v = 1L * p * i;
+                if (v > n) break;
+                int m = (int) v;
+                if (i % p == 0) {
+                    lpPow[m] = lpPow[i] * p;
+                    exp[m] = (byte) (exp[i] + 1);
+                    int rest = i / lpPow[i];
+                    // m = p^(e+1) * rest; when rest = 1 this is a new prime power
+                    val[m] = rest == 1 ? f.at(p, exp[m], m) : val[lpPow[m]] * val[rest];
+                    break;
+                }
+                lpPow[m] = p;
+                exp[m] = 1;
+                val[m] = val[i] * val[p];
+            }
+        }
+        return val;
+    }
+
+    /**
+     * Computes the requested functions (flags = PHI | MU | ...) for 1..n in a single pass.
+     * sigmaK is the k of sigma_k (0 gives tau again, 1 the sum of divisors).
+     */
+    public static Tables compute(int n, int sigmaK, int flags) {
+        Tables t = new Tables();
+        boolean wantPhi = (flags & PHI) != 0, wantMu = (flags & MU) != 0, wantSigma = (flags & SIGMA) != 0,
+                wantTau = (flags & TAU) != 0, wantOmega = (flags & OMEGA) != 0;
+        int[] phi = wantPhi ? new int[n + 1] : null;
+        byte[] mu = wantMu ? new byte[n + 1] : null;
+        long[] sigma = wantSigma ? new long[n + 1] : null;
+        int[] tau = wantTau ? new int[n + 1] : null;
+        byte[] omega = wantOmega ? new byte[n + 1] : null;
+        int[] lpPow = new int[n + 1];
+        int[] primes = new int[LinearSieveWithSPF.maxPrimeCount(n)];
+        int pc = 0;
+
+        if (n >= 1) {
+            if (wantPhi) phi[1] = 1;
+            if (wantMu) mu[1] = 1;
+            if (wantSigma) sigma[1] = 1;
+            if (wantTau) tau[1] = 1;
+        }
+        for (int i = 2; i <= n; i++) {
+            if (lpPow[i] == 0) {
+                primes[pc++] = i;
+                lpPow[i] = i;
+                if (wantPhi) phi[i] = i - 1;
+                if (wantMu) mu[i] = -1;
+                if (wantSigma) sigma[i] = 1 + pow(i, sigmaK);
+                if (wantTau) tau[i] = 2;
+                if (wantOmega) omega[i] = 1;
+            }
+            for (int j = 0; j < pc; j++) {
+                int p = primes[j];
+                long v = 1L * p * i;
+                if (v > n) break;
+                int m = (int) v;
+                if (i % p == 0) {
+                    // m = p^(e+1) * rest with rest = i / p^e coprime to p
+                    lpPow[m] = lpPow[i] * p;
+                    int rest = i / lpPow[i];
+                    if (wantPhi) phi[m] = phi[i] * p;
+                    // mu[m] stays 0
+                    if (wantSigma) sigma[m] = sigma[i] * pow(p, sigmaK) + sigma[rest];
+                    if (wantTau) tau[m] = tau[i] + tau[rest];
+                    if (wantOmega) omega[m] = omega[i];
+                    break;
+                }
+                lpPow[m] = p;
+                if (wantPhi) phi[m] = phi[i] * (p - 1);
+                if (wantMu) mu[m] = (byte) -mu[i];
+                if (wantSigma) sigma[m] = sigma[i] * sigma[p];
+                if (wantTau) tau[m] = tau[i] * 2;
+                if (wantOmega) omega[m] = (byte) (omega[i] + 1);
+            }
+        }
+        t.phi = phi;
+        t.mu = mu;
+        t.sigma = sigma;
+        t.tau = tau;
+        t.omega = omega;
+        t.primes = Arrays.copyOf(primes, pc);
+        return t;
+    }
+
+    /** phi[0..n] as int[] (phi[0] = 0) */
+    public static int[] phi(int n) {
+        return compute(n, 0, PHI).phi;
+    }
+
+    /** mu[0..n] as int[] (mu[0] = 0) */
+    public static int[] mobius(int n) {
+        byte[] mu = compute(n, 0, MU).mu;
+        int[] res = new int[n + 1];
+        for (int i = 0; i <= n; i++) res[i] = mu[i];
+        return res;
+    }
+
+    /** sigma_k[0..n] (sigma_k[0] = 0) */
+    public static long[] sigma(int n, int k) {
+        return compute(n, k, SIGMA).sigma;
+    }
+
+    private static long pow(long p, int k) {
+        long r = 1;
+        for (int i = 0; i < k; i++) r *= p;
+        return r;
+    }
+
+    public static void main(String[] args) {
+        Tables t = compute(30, 1, ALL);
+        System.out.println("n  phi mu sigma tau omega");
+        for (int i = 1; i <= 12; i++)
+            System.out.println(i + "  " + t.phi[i] + "  " + t.mu[i] + "  " + t.sigma[i] + "  " + t.tau[i] + "  " + t.omega[i]);
+
+        // any multiplicative function from its prime-power values, e.g. sigma_2
+        long[] sigma2 = table(10, (p, k, pk) -> (pk * pk * p * p - 1) / (1L * p * p - 1));
+        System.out.println("sigma_2(1..10): " + Arrays.toString(Arrays.copyOfRange(sigma2, 1, 11)));
+
+        int n = 10_000_000;
+        long start = System.nanoTime();
+        Tables big = compute(n, 1, PHI | MU | TAU | OMEGA);
+        System.out.println("phi, mu, tau, omega up to 1e7 in " + (System.nanoTime() - start) / 1_000_000
+                + " ms, phi(1e7) = " + big.phi[n] + ", tau(1e7) = " + big.tau[n]);
+    }
+}
@@ -4,20 +4,6 @@ public class LucasTheoremUtils {
     private static boolean precomputed = false;
     private static int P = 1000003; // use a smaller prime for demonstration
 
-    private static long modPow(long base, long exp, long mod) {
-        long res = 1;
-        while (exp > 0) {
-            if ((exp & 1) == 1) res = (res * base) % mod;
-            base = (base * base) % mod;
-            exp >>= 1;
-        }
-        return res;
-    }
-
-    private static long modInverse(long a, long mod) {
-        return modPow(a, mod - 2, mod);
-    }
-
     public static void precompute(int p) {
         if (precomputed) return;
         fact[0] = 1;
@@ -27,19 +13,23 @@ public class LucasTheoremUtils {
         precomputed = true;
     }
 
-    private static long nCrModPsmall(long n, long r, int p) {
-        if (r > n) return 0;
-        long num = fact[(int) n];
-        long denom = (fact[(int) r] * fact[(int) (n - r)]) % p;
-        return (num * modInverse(denom, p)) % p;
-    }
-
+    /**
+     * Product of C(n_i, r_i) over the base-p digits. The digit denominators are multiplied
+     * together and inverted once at the end, rather than once per digit.
+     */
     public static long nCrLucas(long n, long r, int p) {
         if (!precomputed) precompute(p);
-        if (r == 0) return 1;
-        long ni = n % p;
-        long ri = r % p;
-        return (nCrLucas(n / p, r / p, p) * nCrModPsmall(ni, ri, p)) % p;
+        Modulus M = Modulus.of(p);
+        long num = 1, denom = 1;
+        while (r > 0) {
+            int ni = (int) (n % p), ri = (int) (r % p);
+            if (ri > ni) return 0;
+            num = M.mul(num, fact[ni]);
+            denom = M.mul(denom, M.mul(fact[ri], fact[ni - ri]));
+            n /= p;
+            r /= p;
+        }
+        return M.mul(num, M.inverse(denom));
     }
 
     public static void main(String[] args) {
@@ -11,35 +11,9 @@ import java.util.*;
  */
 public class MobiusInversionUtils {
 
-    /** Linear sieve to compute mu[1..n] and primes */
+    /** Linear sieve to compute mu[1..n] */
     public static int[] mobiusSieve(int n) {
-        int[] mu = new int[n + 1];
-        boolean[] isComposite = new boolean[n + 1];
-        int[] primes = new int[n + 1];
-        int pc = 0;
-        mu[1] = 1;
-        for (int i = 2; i <= n; i++) mu[i] = 0;
-
-        for (int i = 2; i <= n; i++) {
-            if (!isComposite[i]) {
-                primes[pc++] = i;
-                mu[i] = -1;
-            }
-            for (int j = 0; j < pc; j++) {
-                int p = primes[j];
-                long v = 1L * p * i;
-                if (v > n) break;
-                isComposite[(int) v] = true;
-                if (i % p == 0) {
-                    mu[(int) v] = 0;
-                    break;
-                } else {
-                    mu[(int) v] = -mu[i];
-                }
-            }
-        }
-        // set mu[1] already 1
-        return mu;
+        return LinearMultiplicativeSieve.mobius(n);
     }
 
     /** Given F(n) = sum_{d|n} f(d), compute f(n) by Möbius inversion:
@@ -6,7 +6,7 @@ import java.util.function.LongUnaryOperator;
  *
  * - Test multiplicativity
  * - Dirichlet convolution
- * - Sample multiplicative functions (phi, mu, sigma) via sieve
+ * - Sample multiplicative functions (phi, mu, sigma) via LinearMultiplicativeSieve
  */
 public class MultiplicativeFunctions {
 
@@ -34,27 +34,13 @@ public class MultiplicativeFunctions {
         return h;
     }
 
-    /** Compute phi[1..n] and sigma (sum of divisors) using sieve-like approach */
+    /** Compute phi[1..n] and sigma (sum of divisors) with the linear sieve, O(n) each */
     public static long[] phiSieve(int n) {
-        long[] phi = new long[n + 1];
-        for (int i = 0; i <= n; i++) phi[i] = i;
-        for (int p = 2; p <= n; p++) {
-            if (phi[p] == p) {
-                for (int k = p; k <= n; k += p) {
-                    phi[k] -= phi[k] / p;
-                }
-            }
-        }
-        return phi;
+        return Arrays.stream(LinearMultiplicativeSieve.phi(n)).asLongStream().toArray();
     }
 
     public static long[] sigmaSieve(int n) {
-        long[] sigma = new long[n + 1];
-        for (int i = 0; i <= n; i++) sigma[i] = 0;
-        for (int d = 1; d <= n; d++) {
-            for (int k = d; k <= n; k += d) sigma[k] += d;
-        }
-        return sigma;
+        return LinearMultiplicativeSieve.sigma(n, 1);
     }
 
     public static void main(String[] args) {
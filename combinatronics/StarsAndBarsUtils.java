@@ -1,14 +1,9 @@
 public class StarsAndBarsUtils {
     private static final int MOD = 1_000_000_007;
+    private static final Modulus M = Modulus.of(MOD);
 
     public static long modPow(long a, long b) {
-        long res = 1;
-        while (b > 0) {
-            if ((b & 1) == 1) res = (res * a) % MOD;
-            a = (a * a) % MOD;
-            b >>= 1;
-        }
-        return res;
+        return M.pow(a, b);
     }
 
     public static long modInverse(long a) {
@@ -19,10 +14,10 @@ public class StarsAndBarsUtils {
         if (r < 0 || r > n) return 0;
         long num = 1, denom = 1;
         for (long i = 0; i < r; i++) {
-            num = (num * (n - i)) % MOD;
-            denom = (denom * (i + 1)) % MOD;
+            num = M.mul(num, M.reduce(n - i));
+            denom = M.mul(denom, M.reduce(i + 1));
         }
-        return (num * modInverse(denom)) % MOD;
+        return M.mul(num, modInverse(denom));
     }
 
     public static long starsAndBars(int n, int k) {
@@ -9,18 +9,11 @@ import java.util.*;
 public class TotientSumUtils {
 
     public static long[] phiSieve(int n) {
-        long[] phi = new long[n + 1];
-        for (int i = 0; i <= n; i++) phi[i] = i;
-        for (int p = 2; p <= n; p++) {
-            if (phi[p] == p) {
-                for (int k = p; k <= n; k += p) phi[k] -= phi[k] / p;
-            }
-        }
-        return phi;
+        return Arrays.stream(LinearMultiplicativeSieve.phi(n)).asLongStream().toArray();
     }
 
     public static long totientSum(int n) {
-        long[] phi = phiSieve(n);
+        int[] phi = LinearMultiplicativeSieve.phi(n);
         long sum = 0;
         for (int i = 1; i <= n; i++) sum += phi[i];
         return sum;
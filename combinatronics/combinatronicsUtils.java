@@ -3,35 +3,16 @@ import java.util.*;
 public class CombinatoricsUtils {
     private static final int MOD = 1_000_000_007;
     private static final int MAX = 1_000_000; // adjust as needed
-    private static long[] fact = new long[MAX + 1];
-    private static long[] invFact = new long[MAX + 1];
+    private static long[] fact;
+    private static long[] invFact;
+    private static final Modulus M = Modulus.of(MOD);
     private static boolean precomputed = false;
 
-    // --- Modular exponentiation ---
-    private static long modPow(long base, long exp, long mod) {
-        long res = 1;
-        base %= mod;
-        while (exp > 0) {
-            if ((exp & 1) == 1)
-                res = (res * base) % mod;
-            base = (base * base) % mod;
-            exp >>= 1;
-        }
-        return res;
-    }
-
     // --- Precompute factorials and inverse factorials ---
     public static void precompute() {
         if (precomputed) return;
-        fact[0] = 1;
-        for (int i = 1; i <= MAX; i++) {
-            fact[i] = (fact[i - 1] * i) % MOD;
-        }
-
-        invFact[MAX] = modPow(fact[MAX], MOD - 2, MOD);
-        for (int i = MAX - 1; i >= 0; i--) {
-            invFact[i] = (invFact[i + 1] * (i + 1)) % MOD;
-        }
+        fact = ModArrays.factorials(MAX, MOD);
+        invFact = ModArrays.inverseFactorials(fact, MOD);
 
         precomputed = true;
     }
@@ -40,7 +21,7 @@ public class CombinatoricsUtils {
     public static long nCrMod(int n, int r) {
         if (!precomputed) precompute();
         if (r < 0 || r > n) return 0;
-        return (((fact[n] * invFact[r]) % MOD) * invFact[n - r]) % MOD;
+        return M.mul(M.mul(fact[n], invFact[r]), invFact[n - r]);
     }
 
     // --- Simple nCr (no mod, for small n) ---
@@ -61,7 +42,7 @@ public class CombinatoricsUtils {
         for (int i = 0; i <= n; i++) {
             C[i][0] = C[i][i] = 1;
             for (int j = 1; j < i; j++) {
-                C[i][j] = (C[i - 1][j - 1] + C[i - 1][j]) % MOD;
+                C[i][j] = M.add(C[i - 1][j - 1], C[i - 1][j]);
             }
         }
         return C;